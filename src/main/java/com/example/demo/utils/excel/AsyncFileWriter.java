@@ -0,0 +1,115 @@
+package com.example.demo.utils.excel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 异步导出时把临时文件写到response
+ * 只在连接可写时写出一块, 写不动时返回, 等容器再次回调, 期间不占用线程
+ * 写完, 出错或连接断开时删除临时文件
+ */
+class AsyncFileWriter implements WriteListener, AsyncListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncFileWriter.class);
+
+    // 每次写出的块大小
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final AsyncContext asyncContext;
+    private final File file;
+    private final byte[] buffer = new byte[CHUNK_SIZE];
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private InputStream inputStream;
+    private ServletOutputStream outputStream;
+
+    AsyncFileWriter(AsyncContext asyncContext, File file) {
+        this.asyncContext = asyncContext;
+        this.file = file;
+    }
+
+    /**
+     * 注册到response的输出流上, 容器随后回调{@link #onWritePossible()}
+     * 文件要在注册前打开, 容器可能在setWriteListener中就开始回调; 注册失败时关闭并删除临时文件
+     */
+    void start() throws IOException {
+        try {
+            inputStream = new FileInputStream(file);
+            asyncContext.getResponse().setContentLengthLong(file.length());
+            asyncContext.addListener(this);
+            outputStream = asyncContext.getResponse().getOutputStream();
+            outputStream.setWriteListener(this);
+        } catch (IOException | RuntimeException e) {
+            finish();
+            throw e;
+        }
+    }
+
+    @Override
+    public void onWritePossible() throws IOException {
+        while (outputStream.isReady()) {
+            int read = inputStream.read(buffer);
+            if (read == -1) {
+                finish();
+                asyncContext.complete();
+                return;
+            }
+            outputStream.write(buffer, 0, read);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        logger.warn("异步导出写出失败, 客户端可能已断开.{}", throwable.getMessage());
+        finish();
+        asyncContext.complete();
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+        finish();
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        finish();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+        finish();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+    }
+
+    /**
+     * 关闭并删除临时文件, 只执行一次
+     */
+    private void finish() {
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (null != inputStream) {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            logger.error("导出时关闭资源出错.{}", e.getMessage());
+        }
+        if (!file.delete()) {
+            logger.warn("删除导出临时文件失败, 文件:{}", file.getPath());
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.demo.utils.excel;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 抽样估算列宽
+ * autoSizeColumn在SXSSF上要跟踪所有行, 还要算字体, 太慢
+ * 这里只看表头, 前N行, 以及后面的行中蓄水池抽样的N行, 按字符宽度估算, 不用AWT字体
+ */
+public class ColumnWidthEstimator {
+
+    // 最大列宽, 字符数
+    private static final int MAX_WIDTH = 60;
+    // 左右留白, 字符数
+    private static final int PADDING = 2;
+
+    private final int sampleSize;
+    private final DataFormatter dataFormatter = new DataFormatter();
+    // 固定种子, 同样的数据导出同样的列宽
+    private final Random random = new Random(0x5EED);
+
+    // 表头和前N行中每列的最大宽度
+    private int[] headWidths = new int[0];
+    // 蓄水池, 每行是各列的宽度
+    private final int[][] reservoir;
+    // 前N行之后已经看过的行数
+    private long seen;
+
+    /**
+     * @param sampleSize 前面抽取的行数, 也是后面蓄水池的大小
+     */
+    public ColumnWidthEstimator(int sampleSize) {
+        this.sampleSize = sampleSize;
+        this.reservoir = new int[sampleSize][];
+    }
+
+    /**
+     * 观察一行, 要在行填充完之后调用
+     * 没有被抽中的行不做任何计算
+     * @param row 填充好的行
+     */
+    public void observe(Row row) {
+        if (row.getRowNum() <= sampleSize) {
+            headWidths = max(headWidths, measure(row));
+            return;
+        }
+
+        seen++;
+        int slot;
+        if (seen <= sampleSize) {
+            slot = (int) (seen - 1);
+        } else {
+            long candidate = (long) (random.nextDouble() * seen);
+            if (candidate >= sampleSize) {
+                return;
+            }
+            slot = (int) candidate;
+        }
+        reservoir[slot] = measure(row);
+    }
+
+    /**
+     * 把估算的列宽设置到工作表的列定义上
+     * @param sheet 工作表
+     */
+    public void apply(Sheet sheet) {
+        int[] widths = headWidths;
+        for (int[] sample : reservoir) {
+            if (null != sample) {
+                widths = max(widths, sample);
+            }
+        }
+        for (int i = 0; i < widths.length; i++) {
+            if (widths[i] > 0) {
+                sheet.setColumnWidth(i, Math.min(widths[i] + PADDING, MAX_WIDTH) * 256);
+            }
+        }
+    }
+
+    /**
+     * 量一行中每个单元格显示出来的宽度
+     */
+    private int[] measure(Row row) {
+        int[] widths = new int[Math.max(0, row.getLastCellNum())];
+        for (int i = 0; i < widths.length; i++) {
+            Cell cell = row.getCell(i);
+            if (null != cell) {
+                widths[i] = width(dataFormatter.formatCellValue(cell));
+            }
+        }
+        return widths;
+    }
+
+    /**
+     * 字符宽度, ASCII算1个, 中文等全角字符算2个
+     */
+    private static int width(String text) {
+        int width = 0;
+        for (int i = 0; i < text.length(); i++) {
+            width += text.charAt(i) < 0x0100 ? 1 : 2;
+        }
+        return width;
+    }
+
+    private static int[] max(int[] widths, int[] sample) {
+        int[] result = widths.length >= sample.length ? widths : Arrays.copyOf(widths, sample.length);
+        for (int i = 0; i < sample.length; i++) {
+            result[i] = Math.max(result[i], sample[i]);
+        }
+        return result;
+    }
+}
@@ -1,16 +1,35 @@
 package com.example.demo.utils.excel;
 
 
+import com.example.demo.utils.excel.goods.CellError;
+import com.example.demo.utils.excel.goods.ColumnSchema;
+import com.example.demo.utils.excel.goods.ColumnType;
 import com.example.demo.utils.excel.goods.ExcelException;
+import com.example.demo.utils.excel.goods.ExportSort;
 import com.example.demo.utils.excel.goods.FieldColumn;
+import com.example.demo.utils.excel.goods.ImportChanges;
+import com.example.demo.utils.excel.goods.ImportErrorPolicy;
+import com.example.demo.utils.excel.goods.ImportResult;
+import com.example.demo.utils.excel.goods.RowCursor;
+import com.example.demo.utils.excel.goods.RowHandler;
+import org.apache.poi.ss.SpreadsheetVersion;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
 import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFCell;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
 
 /**
  * Excel转化器
@@ -20,8 +39,30 @@ import java.util.*;
 public class ExcelConvertor {
     private Logger logger = LoggerFactory.getLogger(ExcelConvertor.class);
 
-    // 时间类型的样式  yyyy-MM-dd HH:mm
-    private CellStyle dateCellStyle;
+    // double能精确表示的最大整数, 2^53
+    private static final long MAX_EXACT_LONG = 1L << 53;
+    private static final double MILLIS_PER_DAY = 24 * 60 * 60 * 1000;
+    // 1970-01-01在Excel中的日期数值
+    private static final double EXCEL_EPOCH_OFFSET = 25569;
+
+    // 驻留在内存中的行的目标字节数, 0表示固定驻留100行
+    private volatile long rowWindowBytes;
+    private final RowWindowMetrics rowWindowMetrics = new RowWindowMetrics();
+
+    /**
+     * 设置驻留行的字节预算, 之后创建的工作簿生效
+     * @param rowWindowBytes 目标字节数, 0表示固定驻留100行
+     */
+    public void setRowWindowBytes(long rowWindowBytes) {
+        this.rowWindowBytes = rowWindowBytes;
+    }
+
+    /**
+     * 驻留行数的指标, 所有导出共用一份, 反映最近记录的那个导出
+     */
+    public RowWindowMetrics getRowWindowMetrics() {
+        return rowWindowMetrics;
+    }
 
     /**
      * 创建工作簿
@@ -31,21 +72,131 @@ public class ExcelConvertor {
      * @return                  创建好的工作簿
      */
     public <T> SXSSFWorkbook createExcel(List<T> data, List<FieldColumn> fieldColumnList) {
+        return createExcel(data, fieldColumnList, 0);
+    }
+
+    /**
+     * 创建工作簿
+     * @param <T>               实体泛型
+     * @param data              表数据
+     * @param fieldColumnList   列信息
+     * @param widthSample       估算列宽的抽样行数, 0表示不估算
+     * @return                  创建好的工作簿
+     */
+    public <T> SXSSFWorkbook createExcel(List<T> data, List<FieldColumn> fieldColumnList, int widthSample) {
 
-        // 内存中只驻留100行数据
-        SXSSFWorkbook workbook = new SXSSFWorkbook(100);
+        // 内存中默认只驻留100行数据, 配置了预算时按预算调整
+        SXSSFWorkbook workbook = new SXSSFWorkbook(RowWindow.DEFAULT_SIZE);
 
-        // 创建日期类型
-        dateCellStyle = workbook.createCellStyle();
-        dateCellStyle.setDataFormat((short)0x16);
+        // 每列的样式, 同样的样式只创建一次
+        CellStyle[] columnStyles = new StylePool(workbook).columnStyles(fieldColumnList);
+
+        // 创建工作簿
+        Sheet sheet = workbook.createSheet();
+        ColumnWidthEstimator widthEstimator = widthSample > 0 ? new ColumnWidthEstimator(widthSample) : null;
+
+        observe(widthEstimator, fillHeader(sheet, fieldColumnList));
+
+        fillBody(sheet, fieldColumnList, data, 1, columnStyles, widthEstimator, rowWindow(sheet));
+
+        if (null != widthEstimator) {
+            widthEstimator.apply(sheet);
+        }
+
+        return workbook;
+    }
+
+    /**
+     * 用编译期生成的映射创建工作簿, 不走反射
+     * @param <T>       实体泛型
+     * @param data      表数据
+     * @param mapper    生成的映射
+     * @return          创建好的工作簿
+     */
+    public <T> SXSSFWorkbook createExcel(List<T> data, ExcelMapper<T> mapper) {
+        return createExcel(data, mapper, 0);
+    }
+
+    /**
+     * 用编译期生成的映射创建工作簿, 不走反射
+     * @param <T>           实体泛型
+     * @param data          表数据
+     * @param mapper        生成的映射
+     * @param widthSample   估算列宽的抽样行数, 0表示不估算
+     * @return              创建好的工作簿
+     */
+    public <T> SXSSFWorkbook createExcel(List<T> data, ExcelMapper<T> mapper, int widthSample) {
+
+        // 内存中默认只驻留100行数据, 配置了预算时按预算调整
+        SXSSFWorkbook workbook = new SXSSFWorkbook(RowWindow.DEFAULT_SIZE);
+
+        // 每列的样式, 同样的样式只创建一次
+        CellStyle[] columnStyles = mapper.columnStyles(new StylePool(workbook));
 
         // 创建工作簿
         Sheet sheet = workbook.createSheet();
+        ColumnWidthEstimator widthEstimator = widthSample > 0 ? new ColumnWidthEstimator(widthSample) : null;
+
+        Row header = sheet.createRow(0);
+        List<String> columnNames = mapper.columnNames();
+        for (int i=0; i<columnNames.size(); i++) {
+            header.createCell(i).setCellValue(columnNames.get(i));
+        }
+        observe(widthEstimator, header);
+
+        RowWindow rowWindow = rowWindow(sheet);
+        for (int i=0; i<data.size(); i++) {
+            Row row = sheet.createRow(i+1);
+            mapper.fillRow(row, data.get(i), columnStyles);
+            observe(widthEstimator, row);
+            rowWindow.observe(row);
+        }
+
+        if (null != widthEstimator) {
+            widthEstimator.apply(sheet);
+        }
+
+        return workbook;
+    }
+
+    /**
+     * 创建只有数据行的工作簿, 用于套用模板的导出, 表头由模板提供
+     * @param <T>               实体泛型
+     * @param data              表数据
+     * @param fieldColumnList   列信息
+     * @param columnStyles      每列的样式, 来自模板
+     * @param firstRow          数据的第一行, 从0开始
+     * @return                  创建好的工作簿
+     */
+    public <T> SXSSFWorkbook createRows(List<T> data, List<FieldColumn> fieldColumnList, CellStyle[] columnStyles, int firstRow) {
 
-        fillHeader(sheet, fieldColumnList);
+        // 内存中默认只驻留100行数据, 配置了预算时按预算调整
+        SXSSFWorkbook workbook = new SXSSFWorkbook(RowWindow.DEFAULT_SIZE);
+        Sheet sheet = workbook.createSheet();
+        fillBody(sheet, fieldColumnList, data, firstRow, columnStyles, null, rowWindow(sheet));
+        return workbook;
+    }
 
-        fillBody(sheet, fieldColumnList, data);
+    /**
+     * 用编译期生成的映射创建只有数据行的工作簿, 同上
+     * @param <T>           实体泛型
+     * @param data          表数据
+     * @param mapper        生成的映射
+     * @param columnStyles  每列的样式, 来自模板
+     * @param firstRow      数据的第一行, 从0开始
+     * @return              创建好的工作簿
+     */
+    public <T> SXSSFWorkbook createRows(List<T> data, ExcelMapper<T> mapper, CellStyle[] columnStyles, int firstRow) {
 
+        // 内存中默认只驻留100行数据, 配置了预算时按预算调整
+        SXSSFWorkbook workbook = new SXSSFWorkbook(RowWindow.DEFAULT_SIZE);
+        Sheet sheet = workbook.createSheet();
+        RowWindow rowWindow = rowWindow(sheet);
+        for (int i=0; i<data.size(); i++) {
+            Row row = sheet.createRow(firstRow + i);
+            mapper.fillRow(row, data.get(i), columnStyles);
+            rowWindow.observe(row);
+        }
         return workbook;
     }
 
@@ -56,35 +207,283 @@ public class ExcelConvertor {
      * @return
      */
     public SXSSFWorkbook createDynamicExcel(List headData, List bodyData) {
+        return createDynamicExcel(headData, bodyData, 0);
+    }
+
+    /**
+     * 创建动态excel
+     * @param headData
+     * @param bodyData
+     * @param widthSample 估算列宽的抽样行数, 0表示不估算
+     * @return
+     */
+    public SXSSFWorkbook createDynamicExcel(List headData, List bodyData, int widthSample) {
 
-        // 内存中只驻留100行数据
-        SXSSFWorkbook workbook = new SXSSFWorkbook(100);
+        // 内存中默认只驻留100行数据, 配置了预算时按预算调整
+        SXSSFWorkbook workbook = new SXSSFWorkbook(RowWindow.DEFAULT_SIZE);
 
         // 创建日期类型
-        dateCellStyle = workbook.createCellStyle();
-        dateCellStyle.setDataFormat((short)0x16);
+        CellStyle dateCellStyle = new StylePool(workbook).dateStyle();
 
         // 创建工作簿
         Sheet sheet = workbook.createSheet();
+        ColumnWidthEstimator widthEstimator = widthSample > 0 ? new ColumnWidthEstimator(widthSample) : null;
 
         Row header = sheet.createRow(0);
-        fillCell(header,headData);
+        fillCell(header,headData,dateCellStyle);
+        observe(widthEstimator, header);
 
+        RowWindow rowWindow = rowWindow(sheet);
         for (int j=0; j<bodyData.size(); j++) {
             Row row = sheet.createRow(j+1);
             List<Object> t = (List<Object>) bodyData.get(j);
-            fillCell(row,t);
+            fillCell(row,t,dateCellStyle);
+            observe(widthEstimator, row);
+            rowWindow.observe(row);
+        }
+
+        if (null != widthEstimator) {
+            widthEstimator.apply(sheet);
         }
 
         return workbook;
     }
 
+    /**
+     * 创建列式数据的excel
+     * 列类型在表结构中确定, 每个单元格直接用对应的getter取值, 不装箱, 不逐个判断类型
+     * @param schema        表结构
+     * @param cursor        数据源, 从头读到尾
+     * @param maxRows       最大行数, 超出时抛出异常
+     * @param widthSample   估算列宽的抽样行数, 0表示不估算
+     * @return 工作簿
+     */
+    public SXSSFWorkbook createColumnarExcel(ColumnSchema schema, RowCursor cursor, int maxRows, int widthSample) {
+
+        // 内存中默认只驻留100行数据, 配置了预算时按预算调整
+        SXSSFWorkbook workbook = new SXSSFWorkbook(RowWindow.DEFAULT_SIZE);
+        try {
+            CellStyle dateCellStyle = new StylePool(workbook).dateStyle();
+            TimeZone timeZone = TimeZone.getDefault();
+            Sheet sheet = workbook.createSheet();
+            ColumnWidthEstimator widthEstimator = widthSample > 0 ? new ColumnWidthEstimator(widthSample) : null;
+
+            int columnCount = schema.size();
+            ColumnType[] types = new ColumnType[columnCount];
+            Row header = sheet.createRow(0);
+            for (int i = 0; i < columnCount; i++) {
+                types[i] = schema.getType(i);
+                header.createCell(i).setCellValue(schema.getName(i));
+            }
+            observe(widthEstimator, header);
+
+            RowWindow rowWindow = rowWindow(sheet);
+            int rowIndex = 0;
+            while (cursor.next()) {
+                if (++rowIndex > maxRows) {
+                    throw new ExcelException("导出数据数量超出最大限制,最大限制为:" + maxRows + "条");
+                }
+                Row row = sheet.createRow(rowIndex);
+                for (int i = 0; i < columnCount; i++) {
+                    if (cursor.isNull(i)) {
+                        continue;
+                    }
+                    switch (types[i]) {
+                        case STRING:
+                            row.createCell(i).setCellValue(cursor.getString(i));
+                            break;
+                        case LONG:
+                            long longValue = cursor.getLong(i);
+                            // 超出double能精确表示的范围时写成文本, Excel中按数字存会丢失精度; 范围内的仍然是数字, 可以计算
+                            if (longValue > MAX_EXACT_LONG || longValue < -MAX_EXACT_LONG) {
+                                row.createCell(i).setCellValue(String.valueOf(longValue));
+                            } else {
+                                row.createCell(i).setCellValue((double) longValue);
+                            }
+                            break;
+                        case DOUBLE:
+                            row.createCell(i).setCellValue(cursor.getDouble(i));
+                            break;
+                        case BOOLEAN:
+                            row.createCell(i).setCellValue(cursor.getBoolean(i));
+                            break;
+                        case DATE:
+                            Cell dateCell = row.createCell(i);
+                            dateCell.setCellValue(excelDate(cursor.getDate(i), timeZone));
+                            dateCell.setCellStyle(dateCellStyle);
+                            break;
+                        default:
+                            break;
+                    }
+                }
+                observe(widthEstimator, row);
+                rowWindow.observe(row);
+            }
+
+            if (null != widthEstimator) {
+                widthEstimator.apply(sheet);
+            }
+            return workbook;
+        } catch (RuntimeException e) {
+            workbook.dispose();
+            throw e;
+        }
+    }
+
+    /**
+     * 创建排序导出的工作簿, 可以按第一个排序列分组, 每组之后插入小计行
+     * 每个实体只取一次值, 按段排序落盘后多路归并, 直接写进工作表, 不复制也不改动调用方的数据
+     * @param <T>               实体泛型
+     * @param data              表数据, 从头读到尾
+     * @param fieldColumnList   列信息
+     * @param sort              排序和分组
+     * @param maxRows           最大数据行数, 超出时抛出异常
+     * @param widthSample       估算列宽的抽样行数, 0表示不估算
+     * @return 工作簿
+     */
+    public <T> SXSSFWorkbook createSortedExcel(Iterator<T> data, List<FieldColumn> fieldColumnList, ExportSort sort,
+                                               int maxRows, int widthSample) {
+        List<String> keys = sort.getColumns();
+        if (keys.isEmpty()) {
+            throw new ExcelException("排序导出至少需要一个排序列");
+        }
+        if (sort.getRunRows() <= 0) {
+            throw new ExcelException("排序导出每段的行数必须大于0:" + sort.getRunRows());
+        }
+        Comparator<List<Object>> comparator = null;
+        Comparator<List<Object>> groupComparator = null;
+        for (int k = 0; k < keys.size(); k++) {
+            Comparator<List<Object>> key = keyComparator(fieldColumnList, columnOf(fieldColumnList, keys.get(k)), sort.isDescending(k));
+            comparator = null == comparator ? key : comparator.thenComparing(key);
+            if (k == 0) {
+                groupComparator = key;
+            }
+        }
+
+        // 分组列只能是第一个排序列, 这样同组的行才是连续的
+        int groupColumn = -1;
+        int[] sumColumns = new int[0];
+        if (null != sort.getGroupColumn()) {
+            if (!sort.getGroupColumn().equals(keys.get(0))) {
+                throw new ExcelException("分组列必须是第一个排序列:" + sort.getGroupColumn());
+            }
+            groupColumn = columnOf(fieldColumnList, sort.getGroupColumn());
+            sumColumns = new int[sort.getSumColumns().size()];
+            for (int j = 0; j < sumColumns.length; j++) {
+                sumColumns[j] = columnOf(fieldColumnList, sort.getSumColumns().get(j));
+                if (!isSortNumber(fieldColumnList.get(sumColumns[j]).getGetter().getReturnType())) {
+                    throw new ExcelException("小计列必须是数字列:" + sort.getSumColumns().get(j));
+                }
+            }
+        }
+
+        // 内存中默认只驻留100行数据, 配置了预算时按预算调整
+        SXSSFWorkbook workbook = new SXSSFWorkbook(RowWindow.DEFAULT_SIZE);
+        SortedRows sortedRows = null;
+        try {
+            CellStyle[] columnStyles = new StylePool(workbook).columnStyles(fieldColumnList);
+            Sheet sheet = workbook.createSheet();
+            ColumnWidthEstimator widthEstimator = widthSample > 0 ? new ColumnWidthEstimator(widthSample) : null;
+            observe(widthEstimator, fillHeader(sheet, fieldColumnList));
+
+            int[] count = {0};
+            sortedRows = SortedRows.sort(new Iterator<List<Object>>() {
+                @Override
+                public boolean hasNext() {
+                    return data.hasNext();
+                }
+
+                @Override
+                public List<Object> next() {
+                    if (++count[0] > maxRows) {
+                        throw new ExcelException("导出数据数量超出最大限制,最大限制为:" + maxRows + "条");
+                    }
+                    return rowValues(fieldColumnList, data.next());
+                }
+            }, comparator, sort.getRunRows());
+
+            RowWindow rowWindow = rowWindow(sheet);
+            int rowIndex = 1;
+            List<Object> group = null;
+            double[] sums = new double[sumColumns.length];
+            while (sortedRows.hasNext()) {
+                List<Object> values = sortedRows.next();
+                if (groupColumn >= 0) {
+                    if (null != group && groupComparator.compare(group, values) != 0) {
+                        Row subtotal = createSortedRow(sheet, rowIndex++);
+                        fillSubtotal(subtotal, group.get(groupColumn), sort.getSubtotalLabel(), groupColumn, sumColumns, sums);
+                        observe(widthEstimator, subtotal);
+                        rowWindow.observe(subtotal);
+                        Arrays.fill(sums, 0);
+                    }
+                    group = values;
+                    for (int j = 0; j < sumColumns.length; j++) {
+                        Object value = values.get(sumColumns[j]);
+                        if (null != value) {
+                            // 存成文本的数字(long, BigDecimal等)按数值累加
+                            sums[j] += value instanceof Double ? (Double) value : Double.parseDouble((String) value);
+                        }
+                    }
+                }
+                Row row = createSortedRow(sheet, rowIndex++);
+                fillValues(row, values, columnStyles);
+                observe(widthEstimator, row);
+                rowWindow.observe(row);
+            }
+            if (null != group) {
+                Row subtotal = createSortedRow(sheet, rowIndex);
+                fillSubtotal(subtotal, group.get(groupColumn), sort.getSubtotalLabel(), groupColumn, sumColumns, sums);
+                observe(widthEstimator, subtotal);
+            }
+
+            if (null != widthEstimator) {
+                widthEstimator.apply(sheet);
+            }
+            return workbook;
+        } catch (RuntimeException e) {
+            workbook.dispose();
+            throw e;
+        } finally {
+            if (null != sortedRows) {
+                sortedRows.close();
+            }
+        }
+    }
+
+    /**
+     * 毫秒时间戳转成Excel的日期数值, 按本地时区, 与{@link DateUtil#getExcelDate(Date)}一致但不创建Date和Calendar
+     */
+    private double excelDate(long epochMillis, TimeZone timeZone) {
+        double days = (double) (epochMillis + timeZone.getOffset(epochMillis)) / MILLIS_PER_DAY + EXCEL_EPOCH_OFFSET;
+        // 1900-03-01之前Excel有闰年的历史问题, 交给POI处理
+        return days < 61 ? DateUtil.getExcelDate(new Date(epochMillis)) : days;
+    }
+
+    /**
+     * 按当前预算调整工作表的驻留行数
+     */
+    private RowWindow rowWindow(Sheet sheet) {
+        return new RowWindow((SXSSFSheet) sheet, rowWindowBytes, rowWindowMetrics);
+    }
+
+    /**
+     * 把填充好的行交给列宽估算
+     * @param widthEstimator    列宽估算, null表示不估算
+     * @param row               填充好的行
+     */
+    private void observe(ColumnWidthEstimator widthEstimator, Row row) {
+        if (null != widthEstimator) {
+            widthEstimator.observe(row);
+        }
+    }
+
     /**
      * 填充一行的单元格
      * @param row
      * @param t
+     * @param dateCellStyle 日期单元格的样式
      */
-    private void fillCell(Row row,List t){
+    private void fillCell(Row row,List t,CellStyle dateCellStyle){
         for (int i=0; i< t.size(); i++) {
             try {
                 Object returnValue = t.get(i);
@@ -133,6 +532,21 @@ public class ExcelConvertor {
      * @return 数据列表
      */
     public <T> List<T> readExcel(Workbook workbook, List<FieldColumn> fieldColumnList, Class<T> modelClass) {
+        return readExcel(workbook, fieldColumnList, modelClass, false);
+    }
+
+    /**
+     * 读取Excel内容到List中去
+     * 公式单元格总是先取文件中缓存的结果, 计算很慢, 只在没有缓存结果时才按需计算
+     * @param workbook          工作簿
+     * @param fieldColumnList   列信息
+     * @param modelClass        实体类型信息
+     * @param evaluateFormulas  没有缓存结果的公式是否计算, false时读为空
+     * @param <T>               泛型类型
+     * @return 数据列表
+     */
+    public <T> List<T> readExcel(Workbook workbook, List<FieldColumn> fieldColumnList, Class<T> modelClass, boolean evaluateFormulas) {
+        FormulaEvaluator evaluator = evaluateFormulas ? workbook.getCreationHelper().createFormulaEvaluator() : null;
         // 目前只支持1页, 再改进
         Sheet sheet = workbook.getSheetAt(0);
 
@@ -148,7 +562,7 @@ public class ExcelConvertor {
             throw new ExcelException("导入的Excel没有与之匹配的列名, 请核实");
         }
 
-        return readBody(sheet, fieldColumnList, modelClass);
+        return readBody(sheet, fieldColumnList, modelClass, evaluator);
     }
 
     /**
@@ -157,6 +571,17 @@ public class ExcelConvertor {
      * @return
      */
     public List<Map<String,Object>> readDynamicExcel(Workbook workbook) {
+        return readDynamicExcel(workbook, false);
+    }
+
+    /**
+     * 读取Excel内容到List中去, 公式单元格同{@link #readExcel(Workbook, List, Class, boolean)}
+     * @param workbook
+     * @param evaluateFormulas  没有缓存结果的公式是否计算, false时读为空
+     * @return
+     */
+    public List<Map<String,Object>> readDynamicExcel(Workbook workbook, boolean evaluateFormulas) {
+        FormulaEvaluator evaluator = evaluateFormulas ? workbook.getCreationHelper().createFormulaEvaluator() : null;
         // 目前只支持1页, 再改进
         Sheet sheet = workbook.getSheetAt(0);
 
@@ -168,30 +593,609 @@ public class ExcelConvertor {
 
         // 读取第一行,判断列名
         Row firstRow = sheet.getRow(0);
-        List<String> head = readHeader(firstRow);
+        List<String> head = readHeader(firstRow, evaluator);
+
+        return readBody(sheet, head, evaluator);
+    }
+
+    /**
+     * 流式读取Excel内容到List中去
+     * 与{@link #readExcel(Workbook, List, Class)}的结果一致, 但不在内存中构建工作簿
+     * @param reader            流式读取器
+     * @param file              Excel文件
+     * @param fieldColumnList   列信息
+     * @param modelClass        实体类型信息
+     * @param <T>               泛型类型
+     * @return 数据列表
+     */
+    public <T> List<T> readExcel(StreamReader reader, File file, List<FieldColumn> fieldColumnList, Class<T> modelClass) {
+        List<String> columnNames = new ArrayList<>(fieldColumnList.size());
+        for (FieldColumn fieldColumn : fieldColumnList) {
+            columnNames.add(fieldColumn.getColumnName());
+        }
+        return readStreamBody(reader, file, columnNames, values -> readRow(values, fieldColumnList, modelClass));
+    }
+
+    /**
+     * 用编译期生成的映射流式读取Excel内容, 不走反射
+     * @param reader    流式读取器
+     * @param file      Excel文件
+     * @param mapper    生成的映射
+     * @param <T>       泛型类型
+     * @return 数据列表
+     */
+    public <T> List<T> readExcel(StreamReader reader, File file, ExcelMapper<T> mapper) {
+        return readStreamBody(reader, file, mapper.columnNames(), mapper::readRow);
+    }
+
+    /**
+     * 流式读取, 复用实体逐行回调, 不保留数据
+     * 实体在池中轮流使用, 回调拿到的实体在之后的poolSize - 1行内不会被改写
+     * @param reader            流式读取器
+     * @param file              Excel文件
+     * @param fieldColumnList   列信息
+     * @param modelClass        实体类型信息
+     * @param poolSize          实体池的大小, 至少为1
+     * @param consumer          每一行的回调, 参数为实体和Excel中的行号(从1开始)
+     * @param <T>               泛型类型
+     * @return 数据行数
+     */
+    public <T> int readEach(StreamReader reader, File file, List<FieldColumn> fieldColumnList, Class<T> modelClass, int poolSize,
+                            ObjIntConsumer<T> consumer) {
+        List<String> columnNames = new ArrayList<>(fieldColumnList.size());
+        for (FieldColumn fieldColumn : fieldColumnList) {
+            columnNames.add(fieldColumn.getColumnName());
+        }
+        Object[] defaults = defaultValues(fieldColumnList);
+        return readEach(reader, file, columnNames, modelClass, poolSize, (values, data) -> {
+            resetRow(fieldColumnList, defaults, data);
+            fillEntity(values, fieldColumnList, data);
+        }, consumer);
+    }
 
-        return readBody(sheet, head);
+    /**
+     * 用编译期生成的映射流式读取, 复用实体逐行回调
+     * @param reader        流式读取器
+     * @param file          Excel文件
+     * @param mapper        生成的映射
+     * @param modelClass    实体类型信息
+     * @param poolSize      实体池的大小, 至少为1
+     * @param consumer      每一行的回调, 参数为实体和Excel中的行号(从1开始)
+     * @param <T>           泛型类型
+     * @return 数据行数
+     */
+    public <T> int readEach(StreamReader reader, File file, ExcelMapper<T> mapper, Class<T> modelClass, int poolSize,
+                            ObjIntConsumer<T> consumer) {
+        return readEach(reader, file, mapper.columnNames(), modelClass, poolSize, mapper::readRow, consumer);
+    }
+
+    /**
+     * 流式读取, 校验第一行的列名后把每一行填充到池中的下一个实体并回调
+     */
+    private <T> int readEach(StreamReader reader, File file, List<String> columnNames, Class<T> modelClass, int poolSize,
+                             BiConsumer<List<Object>, T> rowFiller, ObjIntConsumer<T> consumer) {
+        if (poolSize < 1) {
+            throw new ExcelException("实体池的大小至少为1");
+        }
+        List<T> pool = new ArrayList<>(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            try {
+                pool.add(modelClass.newInstance());
+            } catch (Exception e) {
+                throw new ExcelException("反射生成对象出错, " + e.getMessage());
+            }
+        }
+
+        int[] rows = new int[1];
+        readStream(reader, file, new RowHandler() {
+            // 第一行是否已读
+            private boolean headerRead;
+
+            @Override
+            public void onRow(int rowIndex, List<Object> values) {
+                // 读取第一行,判断列名
+                if (!headerRead) {
+                    headerRead = true;
+                    if (rowIndex != 0 || !readHeader(values, columnNames)) {
+                        throw new ExcelException("导入的Excel没有与之匹配的列名, 请核实");
+                    }
+                    return;
+                }
+                T data = pool.get(rows[0] % poolSize);
+                rowFiller.accept(values, data);
+                rows[0]++;
+                consumer.accept(data, rowIndex + 1);
+            }
+        });
+
+        // 判断是否拥有可读内容
+        if (rows[0] == 0) {
+            logger.warn("导入的excel没有有用的内容, 请检查");
+        }
+        return rows[0];
+    }
+
+    /**
+     * 流式读取, 校验第一行的列名后把每一行转成实体
+     * @param reader        流式读取器
+     * @param file          Excel文件
+     * @param columnNames   列名
+     * @param rowReader     一行值到实体的转化
+     * @param <T>           泛型类型
+     * @return 数据列表
+     */
+    private <T> List<T> readStreamBody(StreamReader reader, File file, List<String> columnNames, Function<List<Object>, T> rowReader) {
+        List<T> data = new ArrayList<>();
+        readStream(reader, file, new RowHandler() {
+            // 第一行是否已读
+            private boolean headerRead;
+
+            @Override
+            public void onRow(int rowIndex, List<Object> values) {
+                // 读取第一行,判断列名
+                if (!headerRead) {
+                    headerRead = true;
+                    if (rowIndex != 0 || !readHeader(values, columnNames)) {
+                        throw new ExcelException("导入的Excel没有与之匹配的列名, 请核实");
+                    }
+                    return;
+                }
+                data.add(rowReader.apply(values));
+            }
+        });
+
+        // 判断是否拥有可读内容
+        if (data.isEmpty()) {
+            logger.warn("导入的excel没有有用的内容, 请检查");
+            return null;
+        }
+        return data;
+    }
+
+    /**
+     * 流式读取到落盘的行存储, 实体在访问时才封装
+     * @param reader            流式读取器
+     * @param file              Excel文件
+     * @param fieldColumnList   列信息
+     * @param modelClass        实体类型信息
+     * @param <T>               泛型类型
+     * @return 落盘的数据列表, 用完需要close
+     */
+    public <T> StoredRows<T> readToStore(StreamReader reader, File file, List<FieldColumn> fieldColumnList, Class<T> modelClass) {
+        List<String> columnNames = new ArrayList<>(fieldColumnList.size());
+        for (FieldColumn fieldColumn : fieldColumnList) {
+            columnNames.add(fieldColumn.getColumnName());
+        }
+        return readToStore(reader, file, columnNames, values -> readRow(values, fieldColumnList, modelClass));
+    }
+
+    /**
+     * 用编译期生成的映射流式读取到落盘的行存储
+     * @param reader    流式读取器
+     * @param file      Excel文件
+     * @param mapper    生成的映射
+     * @param <T>       泛型类型
+     * @return 落盘的数据列表, 用完需要close
+     */
+    public <T> StoredRows<T> readToStore(StreamReader reader, File file, ExcelMapper<T> mapper) {
+        return readToStore(reader, file, mapper.columnNames(), mapper::readRow);
+    }
+
+    /**
+     * 流式读取, 校验第一行的列名后把每一行映射列的值追加到行存储
+     */
+    private <T> StoredRows<T> readToStore(StreamReader reader, File file, List<String> columnNames, Function<List<Object>, T> rowReader) {
+        RowStore rowStore = new RowStore();
+        try {
+            readStream(reader, file, new RowHandler() {
+                // 第一行是否已读
+                private boolean headerRead;
+
+                @Override
+                public void onRow(int rowIndex, List<Object> values) {
+                    // 读取第一行,判断列名
+                    if (!headerRead) {
+                        headerRead = true;
+                        if (rowIndex != 0 || !readHeader(values, columnNames)) {
+                            throw new ExcelException("导入的Excel没有与之匹配的列名, 请核实");
+                        }
+                        return;
+                    }
+                    rowStore.append(values.size() > columnNames.size() ? values.subList(0, columnNames.size()) : values);
+                }
+            });
+            rowStore.finish();
+        } catch (RuntimeException e) {
+            rowStore.close();
+            throw e;
+        }
+
+        // 判断是否拥有可读内容
+        if (rowStore.size() == 0) {
+            logger.warn("导入的excel没有有用的内容, 请检查");
+        }
+        return new StoredRows<>(rowStore, rowReader);
+    }
+
+    /**
+     * 流式读取Excel, 单元格的错误不抛异常也不打日志, 而是记录到返回的报告中
+     * 有错误的行不封装成实体; 表头不匹配或出错的行数超过阈值时停止读取
+     * @param reader            流式读取器
+     * @param file              Excel文件
+     * @param fieldColumnList   列信息
+     * @param modelClass        实体类型信息
+     * @param policy            错误报告的限制
+     * @param <T>               泛型类型
+     * @return 数据和错误报告
+     */
+    public <T> ImportResult<T> readWithReport(StreamReader reader, File file, List<FieldColumn> fieldColumnList, Class<T> modelClass,
+                                              ImportErrorPolicy policy) {
+        return readWithReport(reader, file, fieldColumnList, values -> readRow(values, fieldColumnList, modelClass), policy);
+    }
+
+    /**
+     * 用编译期生成的映射流式读取Excel, 并返回错误报告
+     * @param reader            流式读取器
+     * @param file              Excel文件
+     * @param mapper            生成的映射
+     * @param fieldColumnList   列信息, 与映射的列一一对应, 用于检查单元格的类型
+     * @param policy            错误报告的限制
+     * @param <T>               泛型类型
+     * @return 数据和错误报告
+     */
+    public <T> ImportResult<T> readWithReport(StreamReader reader, File file, ExcelMapper<T> mapper, List<FieldColumn> fieldColumnList,
+                                              ImportErrorPolicy policy) {
+        return readWithReport(reader, file, fieldColumnList, mapper::readRow, policy);
+    }
+
+    /**
+     * 流式读取, 先按字段类型检查每个单元格, 整行没有错误时才转成实体, 所以转化时不会再出错
+     */
+    private <T> ImportResult<T> readWithReport(StreamReader reader, File file, List<FieldColumn> fieldColumnList,
+                                               Function<List<Object>, T> rowReader, ImportErrorPolicy policy) {
+        int columnCount = fieldColumnList.size();
+        List<String> columnNames = new ArrayList<>(columnCount);
+        Class<?>[] columnTypes = new Class<?>[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columnNames.add(fieldColumnList.get(i).getColumnName());
+            columnTypes[i] = fieldColumnList.get(i).getGetter().getReturnType();
+        }
+
+        ImportResult<T> result = new ImportResult<>();
+        try {
+            readStream(reader, file, new RowHandler() {
+                // 第一行是否已读
+                private boolean headerRead;
+
+                @Override
+                public void onRow(int rowIndex, List<Object> values) {
+                    // 读取第一行,判断列名
+                    if (!headerRead) {
+                        headerRead = true;
+                        checkHeader(rowIndex, values, columnNames, result, policy);
+                        return;
+                    }
+                    List<Object> rowValues = values.size() > columnCount ? values.subList(0, columnCount) : values;
+                    boolean valid = true;
+                    for (int i = 0; i < rowValues.size(); i++) {
+                        Object value = rowValues.get(i);
+                        CellError.Reason reason = null == value ? null : checkValue(value, columnTypes[i]);
+                        if (null != reason) {
+                            valid = false;
+                            addError(result, policy, new CellError(rowIndex + 1, i, columnNames.get(i), value, reason));
+                        }
+                    }
+                    if (valid) {
+                        result.getData().add(rowReader.apply(rowValues));
+                        return;
+                    }
+                    result.setErrorRows(result.getErrorRows() + 1);
+                    if (policy.getMaxErrorRows() >= 0 && result.getErrorRows() > policy.getMaxErrorRows()) {
+                        result.setAborted(true);
+                        throw StopReading.INSTANCE;
+                    }
+                }
+            });
+        } catch (StopReading e) {
+            // 原因已记录在报告中
+        }
+        return result;
+    }
+
+    /**
+     * 检查表头, 不匹配的列记为错误并停止读取
+     */
+    private <T> void checkHeader(int rowIndex, List<Object> values, List<String> columnNames, ImportResult<T> result,
+                                 ImportErrorPolicy policy) {
+        for (int i = 0; i < columnNames.size(); i++) {
+            // 第一行不是表头时, 表头视为空
+            Object value = rowIndex == 0 ? valueAt(values, i) : null;
+            if (!columnNames.get(i).equals(value)) {
+                addError(result, policy, new CellError(1, i, columnNames.get(i), value, CellError.Reason.HEADER_MISMATCH));
+            }
+        }
+        if (result.getErrorCount() > 0) {
+            result.setAborted(true);
+            throw StopReading.INSTANCE;
+        }
+    }
+
+    /**
+     * 记录一个错误, 超出保留数的只计数
+     */
+    private <T> void addError(ImportResult<T> result, ImportErrorPolicy policy, CellError error) {
+        result.setErrorCount(result.getErrorCount() + 1);
+        if (result.getErrors().size() < policy.getMaxRecordedErrors()) {
+            result.getErrors().add(error);
+        }
+    }
+
+    /**
+     * 检查流式读取的值能否转成字段的类型, 规则与{@link #readRow(List, List, Class)}一致
+     * 在那里会被跳过或抛出异常的值, 在这里返回原因
+     * @param value 非null的值
+     * @param type  字段类型
+     * @return 不能转化的原因, 能转化时为null
+     */
+    private CellError.Reason checkValue(Object value, Class<?> type) {
+        if (type == String.class) {
+            return null;
+        }
+        if (value instanceof Double) {
+            double doubleValue = (Double) value;
+            if (type == double.class || type == Double.class) {
+                return null;
+            } else if (type == int.class || type == Integer.class) {
+                return checkInteger(doubleValue, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            } else if (type == short.class || type == Short.class) {
+                return checkInteger(doubleValue, Short.MIN_VALUE, Short.MAX_VALUE);
+            } else if (type == long.class || type == Long.class) {
+                return checkInteger(doubleValue, Long.MIN_VALUE, Long.MAX_VALUE);
+            }
+        } else if (value instanceof Boolean) {
+            if (type == boolean.class || type == Boolean.class) {
+                return null;
+            }
+        } else if (value instanceof Date) {
+            if (type == Date.class) {
+                return null;
+            }
+        }
+        return isImportable(type) ? CellError.Reason.TYPE_MISMATCH : CellError.Reason.UNSUPPORTED;
+    }
+
+    private CellError.Reason checkInteger(double value, double min, double max) {
+        if (value < min || value > max) {
+            return CellError.Reason.OUT_OF_RANGE;
+        }
+        return value == Math.rint(value) ? null : CellError.Reason.NOT_INTEGER;
+    }
+
+    /**
+     * 字段类型是否支持导入
+     */
+    private boolean isImportable(Class<?> type) {
+        return type == String.class || type == Date.class
+                || type == double.class || type == Double.class
+                || type == int.class || type == Integer.class
+                || type == short.class || type == Short.class
+                || type == long.class || type == Long.class
+                || type == boolean.class || type == Boolean.class;
+    }
+
+    /**
+     * 提前停止流式读取, 只用于跳出读取器的回调, 不收集栈
+     */
+    private static class StopReading extends RuntimeException {
+        private static final StopReading INSTANCE = new StopReading();
+
+        private StopReading() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * 增量流式读取, 只把与上次导入相比新增和变化的行转成实体
+     * @param reader            流式读取器
+     * @param file              Excel文件
+     * @param fieldColumnList   列信息, 主键列由{@link FieldColumn#isKey()}确定
+     * @param modelClass        实体类型信息
+     * @param previous          上次导入的索引
+     * @param current           本次导入的索引, 读取时填充
+     * @param <T>               泛型类型
+     * @return 变化的行
+     */
+    public <T> ImportChanges<T> readChanges(StreamReader reader, File file, List<FieldColumn> fieldColumnList, Class<T> modelClass,
+                                            RowHashIndex previous, RowHashIndex current) {
+        List<String> columnNames = new ArrayList<>(fieldColumnList.size());
+        for (FieldColumn fieldColumn : fieldColumnList) {
+            columnNames.add(fieldColumn.getColumnName());
+        }
+        return readChanges(reader, file, columnNames, keyColumns(fieldColumnList),
+                values -> readRow(values, fieldColumnList, modelClass), previous, current);
+    }
+
+    /**
+     * 用编译期生成的映射增量流式读取
+     * @param reader        流式读取器
+     * @param file          Excel文件
+     * @param mapper        生成的映射
+     * @param keyColumns    主键列的下标, 见{@link #keyColumns(List)}
+     * @param previous      上次导入的索引
+     * @param current       本次导入的索引, 读取时填充
+     * @param <T>           泛型类型
+     * @return 变化的行
+     */
+    public <T> ImportChanges<T> readChanges(StreamReader reader, File file, ExcelMapper<T> mapper, int[] keyColumns,
+                                            RowHashIndex previous, RowHashIndex current) {
+        return readChanges(reader, file, mapper.columnNames(), keyColumns, mapper::readRow, previous, current);
+    }
+
+    /**
+     * 主键列的下标
+     * @param fieldColumnList 列信息
+     * @return 主键列的下标, 没有主键列时为空, 整行作为主键
+     */
+    public int[] keyColumns(List<FieldColumn> fieldColumnList) {
+        int[] keyColumns = new int[fieldColumnList.size()];
+        int count = 0;
+        for (int i = 0; i < fieldColumnList.size(); i++) {
+            if (fieldColumnList.get(i).isKey()) {
+                keyColumns[count++] = i;
+            }
+        }
+        return Arrays.copyOf(keyColumns, count);
+    }
+
+    /**
+     * 增量流式读取, 先算每行的哈希与上次比较, 没变的行不转成实体
+     */
+    private <T> ImportChanges<T> readChanges(StreamReader reader, File file, List<String> columnNames, int[] keyColumns,
+                                             Function<List<Object>, T> rowReader, RowHashIndex previous, RowHashIndex current) {
+        ImportChanges<T> changes = new ImportChanges<>();
+        // 主键重复时以后面的行为准, 先按主键收集, 读完再放进结果
+        Map<String, T> inserted = new LinkedHashMap<>();
+        Map<String, T> changed = new LinkedHashMap<>();
+        readStream(reader, file, new RowHandler() {
+            // 第一行是否已读
+            private boolean headerRead;
+
+            @Override
+            public void onRow(int rowIndex, List<Object> values) {
+                // 读取第一行,判断列名
+                if (!headerRead) {
+                    headerRead = true;
+                    if (rowIndex != 0 || !readHeader(values, columnNames)) {
+                        throw new ExcelException("导入的Excel没有与之匹配的列名, 请核实");
+                    }
+                    return;
+                }
+
+                long hash = RowHashIndex.hash(values, columnNames.size());
+                String key = rowKey(values, keyColumns, hash);
+                Long replacedHash = current.put(key, hash);
+                Long previousHash = previous.get(key);
+                if (null != replacedHash) {
+                    logger.warn("增量导入时主键重复, 以后面的行为准, 行号:{}, 主键:{}", rowIndex + 1, key);
+                    // 撤销前面那一行的结果, 它的分类只由上次的哈希和它自己的哈希决定
+                    if (null == previousHash) {
+                        inserted.remove(key);
+                    } else if (previousHash.longValue() != replacedHash.longValue()) {
+                        changed.remove(key);
+                    } else {
+                        changes.setUnchanged(changes.getUnchanged() - 1);
+                    }
+                }
+
+                if (null == previousHash) {
+                    inserted.put(key, rowReader.apply(values));
+                } else if (previousHash != hash) {
+                    changed.put(key, rowReader.apply(values));
+                } else {
+                    changes.setUnchanged(changes.getUnchanged() + 1);
+                }
+            }
+        });
+        changes.getInserted().addAll(inserted.values());
+        changes.getChanged().addAll(changed.values());
+
+        for (String key : previous.keys()) {
+            if (null == current.get(key)) {
+                changes.getDeletedKeys().add(key);
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * 行的主键, 多个主键列之间用(char) 1分隔, 没有主键列时为整行的哈希
+     */
+    private String rowKey(List<Object> values, int[] keyColumns, long hash) {
+        if (keyColumns.length == 0) {
+            return Long.toHexString(hash);
+        }
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < keyColumns.length; i++) {
+            if (i > 0) {
+                key.append((char) 1);
+            }
+            Object value = valueAt(values, keyColumns[i]);
+            if (null != value) {
+                key.append(formatValue(value));
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * 流式读取Excel内容到List中去
+     * 与{@link #readDynamicExcel(Workbook)}的结果一致
+     * @param reader    流式读取器
+     * @param file      Excel文件
+     * @return
+     */
+    public List<Map<String,Object>> readDynamicExcel(StreamReader reader, File file) {
+        List<String> head = new ArrayList<>();
+        List<Map<String,Object>> data = new ArrayList<>();
+        readStream(reader, file, new RowHandler() {
+            // 第一行是否已读
+            private boolean headerRead;
+
+            @Override
+            public void onRow(int rowIndex, List<Object> values) {
+                // 第一行为表头
+                if (!headerRead) {
+                    headerRead = true;
+                    head.addAll(readHeader(values));
+                    return;
+                }
+                Map<String,Object> params = new HashMap<>();
+                for (int j = 0; j < head.size(); j++) {
+                    params.put(head.get(j), valueAt(values, j));
+                }
+                data.add(params);
+            }
+        });
+
+        // 判断是否拥有可读内容
+        if (data.isEmpty()) {
+            logger.warn("导入的excel没有有用的内容, 请检查");
+            return null;
+        }
+        return data;
+    }
+
+    /**
+     * 执行流式读取, IO异常转成ExcelException
+     */
+    private void readStream(StreamReader reader, File file, RowHandler handler) {
+        try {
+            reader.read(file, handler);
+        } catch (IOException e) {
+            throw new ExcelException("导入文件异常:" + e.getMessage());
+        }
     }
 
     /**
      * 组装一个标头的list
      * @param row
+     * @param evaluator 公式计算器, null表示不计算
      * @return
      */
-    private List<String> readHeader(Row row) {
+    private List<String> readHeader(Row row, FormulaEvaluator evaluator) {
         List<String> head = new ArrayList<>();
         DecimalFormat decimalFormat = new DecimalFormat("#");
         for(int i = 0 ; i < row.getLastCellNum() ; i++){
             try {
                 Cell cell = row.getCell(i);
 
-                switch (cell.getCellType()) {
+                switch (cellType(cell, evaluator)) {
                     case Cell.CELL_TYPE_BOOLEAN:
                         boolean boolValue = cell.getBooleanCellValue();
                         head.add(String.valueOf(boolValue));
                         break;
                     case Cell.CELL_TYPE_NUMERIC:
-                        if (cell.getCellStyle().getDataFormat() != 0) {
+                        if (DateUtil.isCellDateFormatted(cell)) {
                             Date dateValue = cell.getDateCellValue();
                             SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
                             head.add(sdf.format(dateValue));
@@ -218,9 +1222,10 @@ public class ExcelConvertor {
      * 把整个表数据读取到一个List里,每一行数据是一个Map结构,key为表头里的数据
      * @param sheet
      * @param head 表头list
+     * @param evaluator 公式计算器, null表示不计算
      * @return
      */
-    private List<Map<String,Object>> readBody(Sheet sheet, List<String> head) {
+    private List<Map<String,Object>> readBody(Sheet sheet, List<String> head, FormulaEvaluator evaluator) {
         int totalRow = sheet.getLastRowNum();
         List<Map<String,Object>> data = new ArrayList<>(totalRow);
 
@@ -232,7 +1237,7 @@ public class ExcelConvertor {
                 continue;
             }
             for(int j = 0 ; j < head.size() ; j++){
-                params.put(head.get(j),readCell(row.getCell(j)));
+                params.put(head.get(j),readCell(row.getCell(j), evaluator));
             }
 
             data.add(params);
@@ -244,18 +1249,19 @@ public class ExcelConvertor {
     /**
      * 读取每个单元格数据
      * @param cell
+     * @param evaluator 公式计算器, null表示不计算
      * @return
      */
-    private Object readCell(Cell cell){
+    private Object readCell(Cell cell, FormulaEvaluator evaluator){
         if(cell == null){
            return null;
         }
         try {
-            switch (cell.getCellType()) {
+            switch (cellType(cell, evaluator)) {
                 case Cell.CELL_TYPE_BOOLEAN:
                     return cell.getBooleanCellValue();
                 case Cell.CELL_TYPE_NUMERIC:
-                    if (cell.getCellStyle().getDataFormat() != 0) {
+                    if (DateUtil.isCellDateFormatted(cell)) {
                        return cell.getDateCellValue();
                     } else {
                         return cell.getNumericCellValue();
@@ -276,12 +1282,14 @@ public class ExcelConvertor {
      * 创建表头
      * @param sheet             工作簿中的一页工作表
      * @param fieldColumnList   列信息
+     * @return                  表头行
      */
-    private void fillHeader(Sheet sheet, List<FieldColumn> fieldColumnList) {
+    private Row fillHeader(Sheet sheet, List<FieldColumn> fieldColumnList) {
         Row header = sheet.createRow(0);
         for (int i=0; i<fieldColumnList.size(); i++) {
             header.createCell(i).setCellValue(fieldColumnList.get(i).getColumnName());
         }
+        return header;
     }
 
     /**
@@ -289,12 +1297,37 @@ public class ExcelConvertor {
      * @param sheet             工作表
      * @param fieldColumnList   列信息
      * @param data              将要填充的数据
+     * @param firstRow          数据的第一行, 从0开始
+     * @param columnStyles      每列的样式
+     * @param widthEstimator    列宽估算, null表示不估算
+     * @param rowWindow         驻留行数的调整
      * @param <T>               实体泛型
      */
-    private <T> void fillBody(Sheet sheet, List<FieldColumn> fieldColumnList, List<T> data) {
+    private <T> void fillBody(Sheet sheet, List<FieldColumn> fieldColumnList, List<T> data, int firstRow,
+                              CellStyle[] columnStyles, ColumnWidthEstimator widthEstimator, RowWindow rowWindow) {
         for (int i=0; i<data.size(); i++) {
-            fillRow(sheet.createRow(i+1), fieldColumnList, data.get(i));
+            Row row = sheet.createRow(firstRow + i);
+            fillRow(row, fieldColumnList, data.get(i), columnStyles);
+            observe(widthEstimator, row);
+            rowWindow.observe(row);
+        }
+    }
+
+    /**
+     * 单元格的实际类型, 公式单元格取文件中缓存结果的类型
+     * xlsx中公式可能没有缓存结果(没有v), 此时有计算器才计算, 否则当作空单元格
+     * @param cell      单元格
+     * @param evaluator 公式计算器, null表示不计算
+     * @return Cell.CELL_TYPE_*, 不会是CELL_TYPE_FORMULA
+     */
+    private int cellType(Cell cell, FormulaEvaluator evaluator) {
+        if (cell.getCellType() != Cell.CELL_TYPE_FORMULA) {
+            return cell.getCellType();
         }
+        if (cell instanceof XSSFCell && !((XSSFCell) cell).getCTCell().isSetV()) {
+            return null != evaluator ? evaluator.evaluateFormulaCell(cell) : Cell.CELL_TYPE_BLANK;
+        }
+        return cell.getCachedFormulaResultType();
     }
 
     /**
@@ -320,17 +1353,18 @@ public class ExcelConvertor {
      * @param sheet           工作表
      * @param fieldColumnList 列信息
      * @param modelClass      数据模型信息
+     * @param evaluator       公式计算器, null表示不计算
      * @param <T>             实体泛型
      * @return 数据列表
      */
-    private <T> List<T> readBody(Sheet sheet, List<FieldColumn> fieldColumnList, Class<T> modelClass) {
+    private <T> List<T> readBody(Sheet sheet, List<FieldColumn> fieldColumnList, Class<T> modelClass, FormulaEvaluator evaluator) {
         int totalRow = sheet.getLastRowNum();
         List<T> data = new ArrayList<>(totalRow);
 
         // 跳过第一行列名
         for (int i = 1; i <= totalRow; i++) {
 
-            data.add(readRow(sheet.getRow(i), fieldColumnList, modelClass));
+            data.add(readRow(sheet.getRow(i), fieldColumnList, modelClass, evaluator));
         }
 
         return data;
@@ -341,52 +1375,186 @@ public class ExcelConvertor {
      * @param row               被填充的行对象
      * @param fieldColumnList   列信息
      * @param oneData           将要填充的数据
+     * @param columnStyles      每列的样式, null表示该列不设置样式
      * @param <T>               实体泛型
      */
-    private <T> void fillRow(Row row, List<FieldColumn> fieldColumnList, T oneData) {
+    private <T> void fillRow(Row row, List<FieldColumn> fieldColumnList, T oneData, CellStyle[] columnStyles) {
         for (int i=0; i<fieldColumnList.size(); i++) {
             try {
+                Cell cell = row.createCell(i);
+                if (null != columnStyles[i]) {
+                    cell.setCellStyle(columnStyles[i]);
+                }
                 Object returnValue = fieldColumnList.get(i).getGetter().invoke(oneData);
                 if (null == returnValue) {
-                    row.createCell(i).setCellValue("");
+                    cell.setCellValue("");
                     continue;
                 }
                 Class returnType = fieldColumnList.get(i).getGetter().getReturnType();
                 if (returnType == String.class) {
-                    row.createCell(i).setCellValue(String.valueOf(returnValue));
+                    cell.setCellValue(String.valueOf(returnValue));
                 } else if (returnType == int.class || returnType == Integer.class) {
-                    row.createCell(i).setCellValue((Integer) returnValue);
+                    cell.setCellValue((Integer) returnValue);
                 } else if (returnType == short.class || returnType == Short.class) {
-                    row.createCell(i).setCellValue((Short) returnValue);
+                    cell.setCellValue((Short) returnValue);
                 } else if (returnType == long.class || returnType == Long.class) {
-                    row.createCell(i).setCellValue(String.valueOf(returnValue));
+                    cell.setCellValue(String.valueOf(returnValue));
                 } else if (returnType == boolean.class || returnType == Boolean.class) {
-                    row.createCell(i).setCellValue((Boolean)returnValue);
+                    cell.setCellValue((Boolean)returnValue);
                 } else if (returnType == double.class || returnType == Double.class) {
-                    row.createCell(i).setCellValue((Double)returnValue);
+                    cell.setCellValue((Double)returnValue);
                 } else if (returnType == Date.class) {
-                    Cell dateCell = row.createCell(i);
-                    dateCell.setCellValue((Date)returnValue);
-                    dateCell.setCellStyle(dateCellStyle);
+                    cell.setCellValue((Date)returnValue);
                 } else {
-                    row.createCell(i).setCellValue(String.valueOf(returnValue));
+                    cell.setCellValue(String.valueOf(returnValue));
                 }
             } catch (Exception e) {
-                logger.error("填充单元格出错, index=" + i + ", 数据内容: " + oneData.toString());
+                // 不打印整个实体, 大量出错时toString的开销比导出本身还大
+                logger.error("填充单元格出错, index={}, 列名={}, {}", i, fieldColumnList.get(i).getColumnName(), e.toString());
+            }
+        }
+    }
+
+    /**
+     * 按列名找列的下标
+     */
+    private int columnOf(List<FieldColumn> fieldColumnList, String columnName) {
+        for (int i = 0; i < fieldColumnList.size(); i++) {
+            if (fieldColumnList.get(i).getColumnName().equals(columnName)) {
+                return i;
+            }
+        }
+        throw new ExcelException("没有找到排序导出的列:" + columnName);
+    }
+
+    /**
+     * 一个排序列的比较, null排在升序的最前面
+     * long, float, byte, BigDecimal, BigInteger按导出的习惯存成文本, 比较时按数值, 不按文本; 其他数字类型不支持
+     * 不是数字的类型按存的值比较, 其余类型即导出的文本
+     */
+    @SuppressWarnings("unchecked")
+    private Comparator<List<Object>> keyComparator(List<FieldColumn> fieldColumnList, int column, boolean descending) {
+        Class<?> type = fieldColumnList.get(column).getGetter().getReturnType();
+        Comparator<Object> valueComparator;
+        if (type == long.class || type == Long.class || type == byte.class || type == Byte.class) {
+            valueComparator = Comparator.comparingLong(value -> Long.parseLong((String) value));
+        } else if (type == float.class || type == Float.class) {
+            valueComparator = Comparator.comparingDouble(value -> Double.parseDouble((String) value));
+        } else if (type == BigDecimal.class || type == BigInteger.class) {
+            valueComparator = Comparator.comparing(value -> new BigDecimal((String) value));
+        } else if (Number.class.isAssignableFrom(type) && !isSortNumber(type)) {
+            throw new ExcelException("排序列的类型不支持排序:" + fieldColumnList.get(column).getColumnName() + ", " + type.getName());
+        } else {
+            valueComparator = (left, right) -> ((Comparable<Object>) left).compareTo(right);
+        }
+        Comparator<List<Object>> key = Comparator.comparing(values -> values.get(column), Comparator.nullsFirst(valueComparator));
+        return descending ? key.reversed() : key;
+    }
+
+    /**
+     * 排序导出中按数值比较和小计的列类型
+     * int, short, double及其包装类存成Double, 其余存成文本
+     */
+    private static boolean isSortNumber(Class<?> type) {
+        return type == int.class || type == Integer.class || type == short.class || type == Short.class
+                || type == double.class || type == Double.class || type == long.class || type == Long.class
+                || type == float.class || type == Float.class || type == byte.class || type == Byte.class
+                || type == BigDecimal.class || type == BigInteger.class;
+    }
+
+    /**
+     * 取出一个实体各列的值, 类型与fillRow写出的一致: 整数转成Double, long转成文本, 其余不认识的类型转成文本
+     * 只包含RowStore支持的类型, 可以落盘
+     */
+    private List<Object> rowValues(List<FieldColumn> fieldColumnList, Object oneData) {
+        List<Object> values = new ArrayList<>(fieldColumnList.size());
+        for (int i = 0; i < fieldColumnList.size(); i++) {
+            Object value = null;
+            try {
+                value = fieldColumnList.get(i).getGetter().invoke(oneData);
+            } catch (Exception e) {
+                logger.error("取值出错, index={}, 列名={}, {}", i, fieldColumnList.get(i).getColumnName(), e.toString());
+            }
+            if (value instanceof Integer || value instanceof Short) {
+                value = ((Number) value).doubleValue();
+            } else if (null != value && !(value instanceof String) && !(value instanceof Double)
+                    && !(value instanceof Boolean) && !(value instanceof Date)) {
+                value = String.valueOf(value);
+            }
+            values.add(value);
+        }
+        return values;
+    }
+
+    /**
+     * 排序导出创建一行, 数据行加小计行不能超出工作表的最大行数
+     */
+    private Row createSortedRow(Sheet sheet, int rowIndex) {
+        if (rowIndex > SpreadsheetVersion.EXCEL2007.getLastRowIndex()) {
+            throw new ExcelException("导出数据加小计行超出工作表的最大行数:" + SpreadsheetVersion.EXCEL2007.getMaxRows());
+        }
+        return sheet.createRow(rowIndex);
+    }
+
+    /**
+     * 按取出的值填充一行
+     * @param row           被填充的行对象
+     * @param values        各列的值, 类型见rowValues
+     * @param columnStyles  每列的样式, null表示该列不设置样式
+     */
+    private void fillValues(Row row, List<Object> values, CellStyle[] columnStyles) {
+        for (int i = 0; i < values.size(); i++) {
+            Cell cell = row.createCell(i);
+            if (null != columnStyles[i]) {
+                cell.setCellStyle(columnStyles[i]);
+            }
+            Object value = values.get(i);
+            if (null == value) {
+                cell.setCellValue("");
+            } else if (value instanceof Double) {
+                cell.setCellValue((Double) value);
+            } else if (value instanceof Boolean) {
+                cell.setCellValue((Boolean) value);
+            } else if (value instanceof Date) {
+                cell.setCellValue((Date) value);
+            } else {
+                cell.setCellValue((String) value);
             }
         }
     }
 
+    /**
+     * 填充小计行: 分组列写分组值和标签, 小计列写合计
+     */
+    private void fillSubtotal(Row row, Object groupValue, String label, int groupColumn, int[] sumColumns, double[] sums) {
+        String text;
+        if (null == groupValue) {
+            text = label;
+        } else if (groupValue instanceof Double && (Double) groupValue == Math.rint((Double) groupValue)
+                && !Double.isInfinite((Double) groupValue)) {
+            text = (long) (double) (Double) groupValue + " " + label;
+        } else if (groupValue instanceof Date) {
+            text = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format((Date) groupValue) + " " + label;
+        } else {
+            text = groupValue + " " + label;
+        }
+        row.createCell(groupColumn).setCellValue(text);
+        for (int j = 0; j < sumColumns.length; j++) {
+            row.createCell(sumColumns[j]).setCellValue(sums[j]);
+        }
+    }
+
     /**
      * 读取一行Excel数据封装到一个数据实体中
      *
      * @param row             行对象
      * @param fieldColumnList 列参数信息列表
      * @param modelClass      数据实体类型信息
+     * @param evaluator       公式计算器, null表示不计算
      * @param <T>             数据实体泛型
      * @return 数据对象
      */
-    private <T> T readRow(Row row, List<FieldColumn> fieldColumnList, Class<T> modelClass) {
+    private <T> T readRow(Row row, List<FieldColumn> fieldColumnList, Class<T> modelClass, FormulaEvaluator evaluator) {
         T rowData;
         try {
             rowData = modelClass.newInstance();
@@ -403,7 +1571,7 @@ public class ExcelConvertor {
                 Cell cell = row.getCell(i);
                 Class returnType = fieldColumnList.get(i).getGetter().getReturnType();
 
-                switch (cell.getCellType()) {
+                switch (cellType(cell, evaluator)) {
                     case Cell.CELL_TYPE_BOOLEAN:
                         boolean boolValue = cell.getBooleanCellValue();
                         if (returnType == boolean.class || returnType == Boolean.class) {
@@ -413,7 +1581,7 @@ public class ExcelConvertor {
                         }
                         break;
                     case Cell.CELL_TYPE_NUMERIC:
-                        if (cell.getCellStyle().getDataFormat() != 0) {
+                        if (DateUtil.isCellDateFormatted(cell)) {
                             Date dateValue = cell.getDateCellValue();
                             if (returnType == Date.class) {
                                 fieldColumn.getSetter().invoke(rowData, dateValue);
@@ -453,4 +1621,170 @@ public class ExcelConvertor {
         return rowData;
     }
 
+    /**
+     * 组装一个标头的list, 流式读取时使用
+     * @param values 第一行的值
+     * @return
+     */
+    private List<String> readHeader(List<Object> values) {
+        List<String> head = new ArrayList<>();
+        for (Object value : values) {
+            if (null != value) {
+                head.add(formatValue(value));
+            }
+        }
+        return head;
+    }
+
+    /**
+     * 判断流式读取的第一行是否为合法的head
+     * @param values        第一行的值
+     * @param columnNames   列名
+     * @return true拥有正确的head, 可以继续读取; false-head不对,拒绝读取
+     */
+    private boolean readHeader(List<Object> values, List<String> columnNames) {
+        for (int i = 0; i < columnNames.size(); i++) {
+            if (!columnNames.get(i).equals(valueAt(values, i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 把流式读取的一行值封装到一个数据实体中
+     * 类型转化规则与{@link #readRow(Row, List, Class, FormulaEvaluator)}一致
+     *
+     * @param values          一行的值
+     * @param fieldColumnList 列参数信息列表
+     * @param modelClass      数据实体类型信息
+     * @param <T>             数据实体泛型
+     * @return 数据对象
+     */
+    private <T> T readRow(List<Object> values, List<FieldColumn> fieldColumnList, Class<T> modelClass) {
+        T rowData;
+        try {
+            rowData = modelClass.newInstance();
+        } catch (Exception e) {
+            logger.error("反射生成对象出错, " + e.getMessage());
+            return null;
+        }
+
+        fillEntity(values, fieldColumnList, rowData);
+        return rowData;
+    }
+
+    /**
+     * 把流式读取的一行值填充到已有的实体中, 空值的列不填
+     *
+     * @param values          一行的值
+     * @param fieldColumnList 列参数信息列表
+     * @param rowData         数据对象
+     * @param <T>             数据实体泛型
+     */
+    private <T> void fillEntity(List<Object> values, List<FieldColumn> fieldColumnList, T rowData) {
+        for (int i = 0; i < fieldColumnList.size(); i++) {
+            FieldColumn fieldColumn = fieldColumnList.get(i);
+            try {
+                Object value = valueAt(values, i);
+                if (null == value) {
+                    continue;
+                }
+                Class returnType = fieldColumn.getGetter().getReturnType();
+
+                if (value instanceof Boolean) {
+                    if (returnType == boolean.class || returnType == Boolean.class) {
+                        fieldColumn.getSetter().invoke(rowData, value);
+                    } else if (returnType == String.class) {
+                        fieldColumn.getSetter().invoke(rowData, String.valueOf(value));
+                    }
+                } else if (value instanceof Date) {
+                    if (returnType == Date.class) {
+                        fieldColumn.getSetter().invoke(rowData, value);
+                    } else if (returnType == String.class) {
+                        fieldColumn.getSetter().invoke(rowData, formatValue(value));
+                    }
+                } else if (value instanceof Double) {
+                    double doubleValue = (Double) value;
+                    if (returnType == double.class || returnType == Double.class) {
+                        fieldColumn.getSetter().invoke(rowData, doubleValue);
+                    } else if (returnType == int.class || returnType == Integer.class) {
+                        fieldColumn.getSetter().invoke(rowData, (int) doubleValue);
+                    } else if (returnType == short.class || returnType == Short.class) {
+                        fieldColumn.getSetter().invoke(rowData, (short) doubleValue);
+                    } else if (returnType == long.class || returnType == Long.class) {
+                        fieldColumn.getSetter().invoke(rowData, (long) doubleValue);
+                    } else if (returnType == String.class) {
+                        fieldColumn.getSetter().invoke(rowData, formatValue(value));
+                    }
+                } else if (returnType == String.class) {
+                    fieldColumn.getSetter().invoke(rowData, value);
+                } else {
+                    fieldColumn.getSetter().invoke(rowData, returnType.cast(value));
+                }
+            } catch (Exception e) {
+                logger.error("封装实体类型出错, index={}, 列名={}", i, fieldColumn.getColumnName());
+            }
+        }
+    }
+
+    /**
+     * 把实体中所有映射的字段重置为默认值, 用于复用实体
+     * @param fieldColumnList   列参数信息列表
+     * @param defaults          每列的默认值, 见{@link #defaultValues(List)}
+     * @param rowData           数据对象
+     */
+    private <T> void resetRow(List<FieldColumn> fieldColumnList, Object[] defaults, T rowData) {
+        for (int i = 0; i < fieldColumnList.size(); i++) {
+            try {
+                fieldColumnList.get(i).getSetter().invoke(rowData, defaults[i]);
+            } catch (Exception e) {
+                logger.error("重置实体字段出错, index={}, 列名={}", i, fieldColumnList.get(i).getColumnName());
+            }
+        }
+    }
+
+    /**
+     * 每列字段类型的默认值, 基本类型为0或false, 其他为null
+     */
+    private Object[] defaultValues(List<FieldColumn> fieldColumnList) {
+        Object[] defaults = new Object[fieldColumnList.size()];
+        for (int i = 0; i < defaults.length; i++) {
+            Class<?> type = fieldColumnList.get(i).getGetter().getReturnType();
+            if (type == boolean.class) {
+                defaults[i] = false;
+            } else if (type == int.class) {
+                defaults[i] = 0;
+            } else if (type == short.class) {
+                defaults[i] = (short) 0;
+            } else if (type == long.class) {
+                defaults[i] = 0L;
+            } else if (type == double.class) {
+                defaults[i] = 0d;
+            } else if (type == float.class) {
+                defaults[i] = 0f;
+            } else if (type == byte.class) {
+                defaults[i] = (byte) 0;
+            } else if (type == char.class) {
+                defaults[i] = (char) 0;
+            }
+        }
+        return defaults;
+    }
+
+    /**
+     * 取一行中某列的值, 越界时为null
+     */
+    private Object valueAt(List<Object> values, int index) {
+        return ExcelMappers.valueAt(values, index);
+    }
+
+    /**
+     * 把流式读取的值转成字符串
+     * 日期 yyyy-MM-dd HH:mm:ss, 数字取整
+     */
+    private String formatValue(Object value) {
+        return ExcelMappers.format(value);
+    }
+
 }
@@ -0,0 +1,50 @@
+package com.example.demo.utils.excel;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+
+import java.util.List;
+
+/**
+ * 实体与Excel行之间的映射
+ * 由注解处理器在编译期为每个@Excel实体的每个@Excel.value生成, 直接调用getter/setter, 不走反射
+ * 没有生成时由{@link Sniffer}反射解析
+ * @param <T> 实体泛型
+ */
+public interface ExcelMapper<T> {
+
+    /**
+     * 列名, 即表头, 已按@Column.index排好序
+     */
+    List<String> columnNames();
+
+    /**
+     * 从样式池中分配每一列的样式
+     * @param stylePool 工作簿的样式池
+     * @return          每列的样式, 不需要样式的列为null
+     */
+    CellStyle[] columnStyles(StylePool stylePool);
+
+    /**
+     * 把一个实体填充到一行
+     * @param row           被填充的行对象
+     * @param data          实体
+     * @param columnStyles  {@link #columnStyles(StylePool)}分配的样式
+     */
+    void fillRow(Row row, T data, CellStyle[] columnStyles);
+
+    /**
+     * 把流式读取的一行值封装成实体
+     * @param values    一行的值, 见{@link com.example.demo.utils.excel.goods.RowHandler}
+     * @return          实体
+     */
+    T readRow(List<Object> values);
+
+    /**
+     * 把流式读取的一行值填充到已有的实体中, 用于复用实体的导入
+     * 先把所有映射的字段重置为null, 0或false, 再按值填充, 不保留上一行的值
+     * @param values    一行的值
+     * @param data      被复用的实体
+     */
+    void readRow(List<Object> values, T data);
+}
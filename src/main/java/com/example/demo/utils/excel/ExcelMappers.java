@@ -0,0 +1,109 @@
+package com.example.demo.utils.excel;
+
+import com.example.demo.utils.excel.tips.Excel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 查找编译期生成的{@link ExcelMapper}, 以及生成代码用到的辅助方法
+ */
+public final class ExcelMappers {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExcelMappers.class);
+
+    /** 生成类的后缀, 如 User -> User_ExcelMapper */
+    public static final String SUFFIX = "_ExcelMapper";
+
+    /** 生成类中按文件名获取映射的静态方法 */
+    public static final String FACTORY_METHOD = "forFile";
+
+    // 实体 -> 文件名 -> 映射, 没有生成的记为empty
+    private static final Map<Class<?>, Map<String, Optional<ExcelMapper<?>>>> MAPPERS = new ConcurrentHashMap<>();
+
+    private ExcelMappers() {
+    }
+
+    /**
+     * 找到实体对应的生成映射
+     * @param modelClass    实体类型信息
+     * @param fileName      文件名, null表示实体只有一个@Excel.value
+     * @param <T>           实体泛型
+     * @return              生成的映射, 没有时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> ExcelMapper<T> find(Class<T> modelClass, String fileName) {
+        Excel excelAnnotation = modelClass.getDeclaredAnnotation(Excel.class);
+        if (null == excelAnnotation) {
+            return null;
+        }
+        String excelName = null != fileName ? fileName : excelAnnotation.value()[0];
+        return (ExcelMapper<T>) MAPPERS.computeIfAbsent(modelClass, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(excelName, key -> Optional.ofNullable(load(modelClass, key)))
+                .orElse(null);
+    }
+
+    /**
+     * 加载生成类
+     */
+    private static ExcelMapper<?> load(Class<?> modelClass, String fileName) {
+        try {
+            Class<?> mapperClass = Class.forName(mapperClassName(modelClass.getName()), true, modelClass.getClassLoader());
+            return (ExcelMapper<?>) mapperClass.getMethod(FACTORY_METHOD, String.class).invoke(null, fileName);
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (Exception e) {
+            logger.warn("加载生成的ExcelMapper出错, 使用反射, 类型:{}, {}", modelClass.getName(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 生成类的全名
+     * @param modelBinaryName 实体类的binary name, 内部类用$分隔
+     */
+    public static String mapperClassName(String modelBinaryName) {
+        return modelBinaryName.replace('$', '_') + SUFFIX;
+    }
+
+    /**
+     * 把读到的值转成字符串
+     * 日期 yyyy-MM-dd HH:mm:ss, 数字取整
+     */
+    public static String format(Object value) {
+        if (value instanceof Date) {
+            return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format((Date) value);
+        } else if (value instanceof Double) {
+            return new DecimalFormat("#").format(value);
+        }
+        return String.valueOf(value);
+    }
+
+    /**
+     * 取一行中某列的值, 越界时为null
+     */
+    public static Object valueAt(List<Object> values, int index) {
+        return index < values.size() ? values.get(index) : null;
+    }
+
+    /**
+     * 填充单元格出错, 只记录实体类型, 不打印整个实体
+     */
+    public static void fillError(int index, Object data) {
+        logger.error("填充单元格出错, index={}, 类型={}", index, null == data ? null : data.getClass().getName());
+    }
+
+    /**
+     * 封装实体出错
+     */
+    public static void readError(int index, String columnName) {
+        logger.error("封装实体类型出错, index={}, 列名={}", index, columnName);
+    }
+}
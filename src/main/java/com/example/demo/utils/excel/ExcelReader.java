@@ -3,16 +3,31 @@ package com.example.demo.utils.excel;
 
 
 import com.example.demo.utils.excel.goods.ExcelException;
+import com.example.demo.utils.excel.goods.ExcelType;
 import com.example.demo.utils.excel.goods.FieldColumn;
+import com.example.demo.utils.excel.goods.ImportChanges;
+import com.example.demo.utils.excel.goods.ImportBudget;
+import com.example.demo.utils.excel.goods.ImportErrorPolicy;
+import com.example.demo.utils.excel.goods.ImportProgress;
+import com.example.demo.utils.excel.goods.ImportEstimate;
+import com.example.demo.utils.excel.goods.ImportResult;
 import com.example.demo.utils.excel.tips.Excel;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
 
 /**
  * 读取Excel
@@ -26,11 +41,24 @@ public class ExcelReader {
     private ExcelConvertor excelConvertor;
     // 嗅探器, 发现实体类上的注解
     private Sniffer sniffer;
+    // 流式读取器, xls
+    private StreamReader hssfStreamReader;
+    // 流式读取器, xlsx
+    private StreamReader xssfStreamReader;
+    // 准入控制, 解析前估算大小
+    private volatile ImportAdmission admission;
+    // 增量导入的索引目录
+    private volatile File indexDirectory = new File(System.getProperty("java.io.tmpdir"), "excel-import-index");
+    // 索引文件 -> 锁, 同一张表的增量导入串行执行
+    private final Map<String, Object> indexLocks = new ConcurrentHashMap<>();
 
     // 单身狗
     private ExcelReader() {
         excelConvertor = new ExcelConvertor();
         sniffer = new Sniffer();
+        hssfStreamReader = new HSSFStreamReader();
+        xssfStreamReader = new XSSFStreamReader();
+        admission = new ImportAdmission(new ImportBudget());
     }
 
 
@@ -42,8 +70,27 @@ public class ExcelReader {
         return ExcelSingle.instance;
     }
 
+    /**
+     * 配置导入预算
+     * 超出预算的文件在解析前就被拒绝或排队
+     * @param budget 导入预算
+     */
+    public void setImportBudget(ImportBudget budget) {
+        admission = new ImportAdmission(budget);
+    }
+
+    /**
+     * 配置增量导入的索引目录
+     * 默认在临时目录下, 被清理后下一次导入视为全部新增
+     * @param indexDirectory 索引目录
+     */
+    public void setIndexDirectory(File indexDirectory) {
+        this.indexDirectory = indexDirectory;
+    }
+
     /**
      * 从request里读取Excel并转化成list结构
+     * 支持xls和xlsx, 按文件头判断格式, 均为流式读取
      * <p>
      * 针对只参与一张excel导出的实体,可使用此方法
      * 即实体上只有一个@Excel注解
@@ -67,21 +114,300 @@ public class ExcelReader {
      * @return 整理成的数据, list结构
      */
     public <T> List<T> importToList(MultipartFile file, Class<T> modelClass, String fileName) {
+        return importToList(file, modelClass, fileName, null);
+    }
+
+    /**
+     * 从request里读取Excel并转化成list结构, 报告进度, 可以取消
+     * 取消或超过截止时间时停止解析, 抛出{@link ExcelException}
+     *
+     * @param file       上传的文件
+     * @param modelClass 数据的实体类型信息, 需要使用@Excel
+     * @param fileName   导入的Excel原始文件名, 同上
+     * @param progress   进度和取消, null表示不报告
+     * @param <T>        实体泛型
+     * @return 整理成的数据, list结构
+     */
+    public <T> List<T> importToList(MultipartFile file, Class<T> modelClass, String fileName, ImportProgress progress) {
 
         // 找到导出文件的信息@Excel
         Excel excelAnnotation = sniffer.findExcel(modelClass, fileName);
 
-        // 找到导出列的信息 @Column
+        // 优先使用编译期生成的映射, 没有时找到导出列的信息 @Column
+        ExcelMapper<T> mapper = ExcelMappers.find(modelClass, fileName);
+        List<FieldColumn> fieldColumnList = null == mapper ? sniffer.findFieldColumns(modelClass, fileName) : null;
+
+        File spoolFile = spool(file);
+        try {
+            ExcelType type = ExcelType.of(spoolFile);
+            ImportAdmission currentAdmission = admission;
+            ImportEstimate estimate = currentAdmission.admit(spoolFile, type);
+            try {
+                StreamReader reader = streamReaderOf(type, currentAdmission).withProgress(progress);
+                return null != mapper
+                        ? excelConvertor.readExcel(reader, spoolFile, mapper)
+                        : excelConvertor.readExcel(reader, spoolFile, fieldColumnList, modelClass);
+            } finally {
+                currentAdmission.release(estimate);
+            }
+        } finally {
+            delete(spoolFile);
+        }
+    }
+
+    /**
+     * 导入到落盘的行存储, 用于放不进堆内存但又需要随机访问全部数据的导入
+     * 返回的List只读, 实体在get时才封装; 没有数据时为空List, 不返回null
+     *
+     * @param file       上传的文件
+     * @param modelClass 数据的实体类型信息, 需要使用@Excel
+     * @param fileName   导入的Excel原始文件名, 同上
+     * @param <T>        实体泛型
+     * @return 落盘的数据列表, 用完需要close
+     */
+    public <T> StoredRows<T> importToStore(MultipartFile file, Class<T> modelClass, String fileName) {
+        return importToStore(file, modelClass, fileName, null);
+    }
+
+    /**
+     * 导入到落盘的行存储, 报告进度, 可以取消, 同上
+     *
+     * @param file       上传的文件
+     * @param modelClass 数据的实体类型信息, 需要使用@Excel
+     * @param fileName   导入的Excel原始文件名, 同上
+     * @param progress   进度和取消, null表示不报告
+     * @param <T>        实体泛型
+     * @return 落盘的数据列表, 用完需要close
+     */
+    public <T> StoredRows<T> importToStore(MultipartFile file, Class<T> modelClass, String fileName, ImportProgress progress) {
+
+        // 找到导出文件的信息@Excel
+        sniffer.findExcel(modelClass, fileName);
+
+        // 优先使用编译期生成的映射, 没有时找到导出列的信息 @Column
+        ExcelMapper<T> mapper = ExcelMappers.find(modelClass, fileName);
+        List<FieldColumn> fieldColumnList = null == mapper ? sniffer.findFieldColumns(modelClass, fileName) : null;
+
+        File spoolFile = spool(file);
+        try {
+            ExcelType type = ExcelType.of(spoolFile);
+            ImportAdmission currentAdmission = admission;
+            ImportEstimate estimate = currentAdmission.admit(spoolFile, type, true);
+            try {
+                StreamReader reader = streamReaderOf(type, currentAdmission).withProgress(progress);
+                return null != mapper
+                        ? excelConvertor.readToStore(reader, spoolFile, mapper)
+                        : excelConvertor.readToStore(reader, spoolFile, fieldColumnList, modelClass);
+            } finally {
+                currentAdmission.release(estimate);
+            }
+        } finally {
+            delete(spoolFile);
+        }
+    }
+
+    /**
+     * 逐行回调的导入, 复用同一个实体, 不保留数据
+     * 适用于只需要逐行校验或转发的导入, 不为每行创建实体; 回调返回后实体会被下一行改写, 需要保留时自行复制
+     *
+     * @param file       上传的文件
+     * @param modelClass 数据的实体类型信息, 需要使用@Excel, 且有无参构造
+     * @param fileName   导入的Excel原始文件名, 同上
+     * @param consumer   每一行的回调, 参数为实体和Excel中的行号(从1开始)
+     * @param <T>        实体泛型
+     * @return 数据行数
+     */
+    public <T> int importEach(MultipartFile file, Class<T> modelClass, String fileName, ObjIntConsumer<T> consumer) {
+        return importEach(file, modelClass, fileName, 1, consumer);
+    }
+
+    /**
+     * 逐行回调的导入, 实体在大小为poolSize的池中轮流复用
+     * 回调拿到的实体在之后的poolSize - 1行内不会被改写, 可以用于和前几行比较
+     * 复用时所有映射的字段先重置为null, 0或false, 不保留字段的初始值
+     *
+     * @param file       上传的文件
+     * @param modelClass 数据的实体类型信息, 需要使用@Excel, 且有无参构造
+     * @param fileName   导入的Excel原始文件名, 同上
+     * @param poolSize   实体池的大小, 至少为1
+     * @param consumer   每一行的回调, 参数为实体和Excel中的行号(从1开始)
+     * @param <T>        实体泛型
+     * @return 数据行数
+     */
+    public <T> int importEach(MultipartFile file, Class<T> modelClass, String fileName, int poolSize, ObjIntConsumer<T> consumer) {
+        return importEach(file, modelClass, fileName, poolSize, consumer, null);
+    }
+
+    /**
+     * 逐行回调的导入, 报告进度, 可以取消, 同上
+     * 回调中也可以调用{@link ImportProgress#cancel()}提前结束
+     *
+     * @param file       上传的文件
+     * @param modelClass 数据的实体类型信息, 需要使用@Excel, 且有无参构造
+     * @param fileName   导入的Excel原始文件名, 同上
+     * @param poolSize   实体池的大小, 至少为1
+     * @param consumer   每一行的回调, 参数为实体和Excel中的行号(从1开始)
+     * @param progress   进度和取消, null表示不报告
+     * @param <T>        实体泛型
+     * @return 数据行数
+     */
+    public <T> int importEach(MultipartFile file, Class<T> modelClass, String fileName, int poolSize, ObjIntConsumer<T> consumer,
+                              ImportProgress progress) {
+
+        // 找到导出文件的信息@Excel
+        sniffer.findExcel(modelClass, fileName);
+
+        // 优先使用编译期生成的映射, 没有时找到导出列的信息 @Column
+        ExcelMapper<T> mapper = ExcelMappers.find(modelClass, fileName);
+        List<FieldColumn> fieldColumnList = null == mapper ? sniffer.findFieldColumns(modelClass, fileName) : null;
+
+        File spoolFile = spool(file);
+        try {
+            ExcelType type = ExcelType.of(spoolFile);
+            ImportAdmission currentAdmission = admission;
+            // 数据不留在内存中, 与落盘导入一样只计读取本身的开销
+            ImportEstimate estimate = currentAdmission.admit(spoolFile, type, true);
+            try {
+                StreamReader reader = streamReaderOf(type, currentAdmission).withProgress(progress);
+                return null != mapper
+                        ? excelConvertor.readEach(reader, spoolFile, mapper, modelClass, poolSize, consumer)
+                        : excelConvertor.readEach(reader, spoolFile, fieldColumnList, modelClass, poolSize, consumer);
+            } finally {
+                currentAdmission.release(estimate);
+            }
+        } finally {
+            delete(spoolFile);
+        }
+    }
+
+    /**
+     * 带错误报告的导入
+     * 单元格的类型错误不抛异常也不打日志, 按行号, 列, 原始值和原因记录在结果中, 有错误的行不进入数据
+     * 表头不匹配或出错的行数超过{@link ImportErrorPolicy#getMaxErrorRows()}时提前停止
+     * 文件本身无法读取, 超出导入预算等仍然抛出{@link ExcelException}
+     *
+     * @param file       上传的文件
+     * @param modelClass 数据的实体类型信息, 需要使用@Excel
+     * @param fileName   导入的Excel原始文件名, 同上
+     * @param policy     错误报告的限制
+     * @param <T>        实体泛型
+     * @return 数据和错误报告; 没有数据时为空List, 不返回null
+     */
+    public <T> ImportResult<T> importWithReport(MultipartFile file, Class<T> modelClass, String fileName, ImportErrorPolicy policy) {
+        return importWithReport(file, modelClass, fileName, policy, null);
+    }
+
+    /**
+     * 带错误报告的导入, 报告进度, 可以取消, 同上
+     * 取消或超时不属于数据错误, 抛出{@link ExcelException}而不是记在报告中
+     *
+     * @param file       上传的文件
+     * @param modelClass 数据的实体类型信息, 需要使用@Excel
+     * @param fileName   导入的Excel原始文件名, 同上
+     * @param policy     错误报告的限制
+     * @param progress   进度和取消, null表示不报告
+     * @param <T>        实体泛型
+     * @return 数据和错误报告; 没有数据时为空List, 不返回null
+     */
+    public <T> ImportResult<T> importWithReport(MultipartFile file, Class<T> modelClass, String fileName, ImportErrorPolicy policy,
+                                                ImportProgress progress) {
+
+        // 找到导出文件的信息@Excel
+        sniffer.findExcel(modelClass, fileName);
+
+        // 生成的映射不检查类型, 由列信息提供字段类型
+        ExcelMapper<T> mapper = ExcelMappers.find(modelClass, fileName);
         List<FieldColumn> fieldColumnList = sniffer.findFieldColumns(modelClass, fileName);
 
-        XSSFWorkbook workbook;
+        File spoolFile = spool(file);
         try {
-            workbook = new XSSFWorkbook(file.getInputStream());
-        } catch (IOException e) {
-            throw new ExcelException("导入文件异常:" + e.getMessage());
+            ExcelType type = ExcelType.of(spoolFile);
+            ImportAdmission currentAdmission = admission;
+            ImportEstimate estimate = currentAdmission.admit(spoolFile, type);
+            try {
+                StreamReader reader = streamReaderOf(type, currentAdmission).withProgress(progress);
+                return null != mapper
+                        ? excelConvertor.readWithReport(reader, spoolFile, mapper, fieldColumnList, policy)
+                        : excelConvertor.readWithReport(reader, spoolFile, fieldColumnList, modelClass, policy);
+            } finally {
+                currentAdmission.release(estimate);
+            }
+        } finally {
+            delete(spoolFile);
         }
+    }
 
-        return excelConvertor.readExcel(workbook, fieldColumnList, modelClass);
+    /**
+     * 增量导入, 只返回与上一次导入同一张表相比新增, 变化和删除的行
+     * 行由@Column(key = true)的列识别, 内容由所有映射列的哈希比较
+     * persister正常返回后才保存本次的索引, 抛出异常时下一次仍与上一次成功的导入比较
+     * 内存预算只在读取时占用, persister和保存索引时已经归还, 只持有这张表的索引锁
+     *
+     * @param file       上传的文件
+     * @param modelClass 数据的实体类型信息, 需要使用@Excel
+     * @param fileName   导入的Excel原始文件名, 同上, 也用于区分索引
+     * @param persister  保存变化的行
+     * @param <T>        实体泛型
+     * @return 变化的行
+     */
+    public <T> ImportChanges<T> importChanges(MultipartFile file, Class<T> modelClass, String fileName,
+                                              Consumer<ImportChanges<T>> persister) {
+        return importChanges(file, modelClass, fileName, persister, null);
+    }
+
+    /**
+     * 增量导入, 报告进度, 可以取消, 同上
+     * 取消或超时发生在读取时, 此时不调用persister, 也不保存本次的索引
+     *
+     * @param file       上传的文件
+     * @param modelClass 数据的实体类型信息, 需要使用@Excel
+     * @param fileName   导入的Excel原始文件名, 同上, 也用于区分索引
+     * @param persister  保存变化的行
+     * @param progress   进度和取消, null表示不报告
+     * @param <T>        实体泛型
+     * @return 变化的行
+     */
+    public <T> ImportChanges<T> importChanges(MultipartFile file, Class<T> modelClass, String fileName,
+                                              Consumer<ImportChanges<T>> persister, ImportProgress progress) {
+
+        // 找到导出文件的信息@Excel
+        Excel excelAnnotation = sniffer.findExcel(modelClass, fileName);
+
+        // 主键列总是从@Column中取, 读取优先使用编译期生成的映射
+        ExcelMapper<T> mapper = ExcelMappers.find(modelClass, fileName);
+        List<FieldColumn> fieldColumnList = sniffer.findFieldColumns(modelClass, fileName);
+
+        File indexFile = indexFileOf(modelClass, fileName != null ? fileName : excelAnnotation.value()[0]);
+        File spoolFile = spool(file);
+        try {
+            ExcelType type = ExcelType.of(spoolFile);
+            ImportAdmission currentAdmission = admission;
+            synchronized (indexLocks.computeIfAbsent(indexFile.getPath(), key -> new Object())) {
+                RowHashIndex previous = RowHashIndex.load(indexFile);
+                RowHashIndex current = new RowHashIndex();
+
+                // 内存预算只在读取时占用, 拿到锁之后才申请, 不等锁也不等persister
+                ImportChanges<T> changes;
+                ImportEstimate estimate = currentAdmission.admit(spoolFile, type);
+                try {
+                    StreamReader reader = streamReaderOf(type, currentAdmission).withProgress(progress);
+                    changes = null != mapper
+                            ? excelConvertor.readChanges(reader, spoolFile, mapper,
+                                    excelConvertor.keyColumns(fieldColumnList), previous, current)
+                            : excelConvertor.readChanges(reader, spoolFile, fieldColumnList, modelClass,
+                                    previous, current);
+                } finally {
+                    currentAdmission.release(estimate);
+                }
+
+                // 同一张表的persister和保存索引仍然串行
+                persister.accept(changes);
+                current.save(indexFile);
+                return changes;
+            }
+        } finally {
+            delete(spoolFile);
+        }
     }
 
     /**
@@ -91,13 +417,84 @@ public class ExcelReader {
      * @return
      */
     public List<Map<String,Object>> importToList(MultipartFile file) {
-        XSSFWorkbook workbook;
+        return importToList(file, (ImportProgress) null);
+    }
+
+    /**
+     * 动态表格的导入, 报告进度, 可以取消, 同上
+     * @param file      上传的文件
+     * @param progress  进度和取消, null表示不报告
+     * @return 每一行为一个map
+     */
+    public List<Map<String,Object>> importToList(MultipartFile file, ImportProgress progress) {
+        File spoolFile = spool(file);
+        try {
+            ExcelType type = ExcelType.of(spoolFile);
+            ImportAdmission currentAdmission = admission;
+            ImportEstimate estimate = currentAdmission.admit(spoolFile, type);
+            try {
+                return excelConvertor.readDynamicExcel(streamReaderOf(type, currentAdmission).withProgress(progress), spoolFile);
+            } finally {
+                currentAdmission.release(estimate);
+            }
+        } finally {
+            delete(spoolFile);
+        }
+    }
+
+    /**
+     * 把上传的文件落到临时文件中
+     * 流式读取需要随机访问zip目录或OLE2块, 直接读上传流会把整个文件解压到内存
+     * @param file 上传的文件
+     * @return 临时文件, 用完后需要删除
+     */
+    private File spool(MultipartFile file) {
         try {
-            workbook = new XSSFWorkbook(file.getInputStream());
+            File spoolFile = File.createTempFile("excel-import-", ".tmp");
+            try (InputStream inputStream = file.getInputStream()) {
+                Files.copy(inputStream, spoolFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                delete(spoolFile);
+                throw e;
+            }
+            return spoolFile;
         } catch (IOException e) {
             throw new ExcelException("导入文件异常:" + e.getMessage());
         }
+    }
 
-        return excelConvertor.readDynamicExcel(workbook);
+    /**
+     * 增量导入的索引文件, 每个实体的每张表一个
+     * @param modelClass    实体类型信息
+     * @param excelName     表名, 即@Excel.value
+     * @return 索引文件
+     */
+    private File indexFileOf(Class<?> modelClass, String excelName) {
+        String encodingName = String.valueOf(excelName.hashCode());
+        try {
+            encodingName = URLEncoder.encode(excelName, "utf-8");
+        } catch (UnsupportedEncodingException e) {
+            logger.warn("增量导入时,表名转码失败, 表名:{}", excelName);
+        }
+        return new File(indexDirectory, modelClass.getName() + "." + encodingName + ".idx");
+    }
+
+    /**
+     * 根据文件格式选择流式读取器, 按预算限制实际读到的行数
+     * @param type      文件格式
+     * @param admission 本次导入通过的准入控制
+     * @return 对应格式的读取器
+     */
+    private StreamReader streamReaderOf(ExcelType type, ImportAdmission admission) {
+        return (type == ExcelType.XLS ? hssfStreamReader : xssfStreamReader).withMaxRows(admission.maxRows());
+    }
+
+    /**
+     * 删除临时文件
+     */
+    private void delete(File file) {
+        if (!file.delete()) {
+            logger.warn("删除导入临时文件失败, 文件:{}", file.getPath());
+        }
     }
 }
@@ -0,0 +1,224 @@
+package com.example.demo.utils.excel;
+
+import com.example.demo.utils.excel.goods.Compression;
+import com.example.demo.utils.excel.goods.ExcelException;
+import org.apache.poi.POIXMLException;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * 解析好的导出模板
+ * 模板xlsx只在加载时解析一次: 表头区域, 合并单元格, 冻结窗格, 样式等都保留在序列化好的条目里,
+ * 数据列的样式取锚定行的单元格样式, 没有时按列注解在模板的样式表中创建
+ * 每次导出只用流式工作簿生成数据行, 输出时原样复制模板的条目, 把数据行拼接到第一页的锚定行处, 不再解析模板
+ * 加载后只读, 可以被多个导出并发使用
+ */
+class ExcelTemplate {
+
+    private final File file;
+    private final long lastModified;
+    private final long length;
+    private final int anchorRow;
+
+    // 条目名称 -> 内容, 保持模板中的顺序
+    private final Map<String, byte[]> entries;
+    // 数据页的条目名称, 及其sheetData中数据行之前和之后的部分
+    private final String sheetEntry;
+    private final byte[] sheetPrefix;
+    private final byte[] sheetSuffix;
+    // 每列的样式, 属于模板的样式表, 只用到下标
+    private final CellStyle[] columnStyles;
+
+    private ExcelTemplate(File file, int anchorRow, Map<String, byte[]> entries, String sheetEntry,
+                          byte[] sheetPrefix, byte[] sheetSuffix, CellStyle[] columnStyles) {
+        this.file = file;
+        this.lastModified = file.lastModified();
+        this.length = file.length();
+        this.anchorRow = anchorRow;
+        this.entries = entries;
+        this.sheetEntry = sheetEntry;
+        this.sheetPrefix = sheetPrefix;
+        this.sheetSuffix = sheetSuffix;
+        this.columnStyles = columnStyles;
+    }
+
+    /**
+     * 加载模板
+     * @param file          模板文件, xlsx
+     * @param anchorRow     锚定行, 从0开始, 数据从这一行写起; 这一行可以是带样式的示例行, 之后不能有内容
+     * @param styleFactory  按列注解分配每一列的样式, 锚定行上没有样式的列使用
+     * @return              解析好的模板
+     */
+    static ExcelTemplate load(File file, int anchorRow, Function<StylePool, CellStyle[]> styleFactory) {
+        if (anchorRow < 0) {
+            throw new ExcelException("模板的锚定行不能小于0:" + anchorRow);
+        }
+        XSSFWorkbook master;
+        try (InputStream inputStream = new FileInputStream(file)) {
+            master = new XSSFWorkbook(inputStream);
+        } catch (IOException | POIXMLException e) {
+            throw new ExcelException("读取导出模板出错:" + e.getMessage());
+        }
+        if (master.getNumberOfSheets() == 0) {
+            throw new ExcelException("导出模板中没有工作表:" + file.getName());
+        }
+        XSSFSheet sheet = master.getSheetAt(0);
+
+        // 锚定行的样式优先, 没有时用列注解的样式
+        CellStyle[] columnStyles = styleFactory.apply(new StylePool(master));
+        Row anchor = sheet.getRow(anchorRow);
+        if (null != anchor) {
+            for (int i = 0; i < columnStyles.length; i++) {
+                Cell cell = anchor.getCell(i);
+                if (null != cell && cell.getCellStyle().getIndex() != 0) {
+                    columnStyles[i] = cell.getCellStyle();
+                }
+            }
+        }
+
+        // 去掉锚定行及之后的行, 之后的行有值时拒绝, 免得被数据覆盖; 只有样式的空白区域一并去掉
+        List<Row> removed = new ArrayList<>();
+        for (Row row : sheet) {
+            if (row.getRowNum() > anchorRow && hasValue(row)) {
+                throw new ExcelException("导出模板的锚定行之后还有内容, 行号:" + (row.getRowNum() + 1));
+            }
+            if (row.getRowNum() >= anchorRow) {
+                removed.add(row);
+            }
+        }
+        for (Row row : removed) {
+            sheet.removeRow(row);
+        }
+
+        String sheetEntry = sheet.getPackagePart().getPartName().getName().substring(1);
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            master.write(buffer);
+            try (ZipInputStream zipStream = new ZipInputStream(new ByteArrayInputStream(buffer.toByteArray()))) {
+                ZipEntry zipEntry;
+                while ((zipEntry = zipStream.getNextEntry()) != null) {
+                    entries.put(zipEntry.getName(), readAll(zipStream));
+                }
+            }
+        } catch (IOException e) {
+            throw new ExcelException("解析导出模板出错:" + e.getMessage());
+        }
+
+        byte[] sheetXml = entries.get(sheetEntry);
+        if (null == sheetXml) {
+            throw new ExcelException("导出模板中没有找到工作表:" + sheetEntry);
+        }
+        String xml = new String(sheetXml, StandardCharsets.UTF_8);
+        int start = xml.indexOf("<sheetData");
+        if (start < 0) {
+            throw new ExcelException("导出模板中没有找到sheetData");
+        }
+        String prefix;
+        String suffix;
+        int tagEnd = xml.indexOf('>', start);
+        if (xml.charAt(tagEnd - 1) == '/') {
+            prefix = xml.substring(0, start) + "<sheetData>";
+            suffix = "</sheetData>" + xml.substring(tagEnd + 1);
+        } else {
+            int end = xml.indexOf("</sheetData>", tagEnd);
+            prefix = xml.substring(0, end);
+            suffix = xml.substring(end);
+        }
+
+        return new ExcelTemplate(file, anchorRow, entries, sheetEntry,
+                prefix.getBytes(StandardCharsets.UTF_8), suffix.getBytes(StandardCharsets.UTF_8), columnStyles);
+    }
+
+    /**
+     * 模板文件加载后是否被修改过
+     */
+    boolean isStale() {
+        return file.lastModified() != lastModified || file.length() != length;
+    }
+
+    /**
+     * 数据的第一行, 从0开始
+     */
+    int getAnchorRow() {
+        return anchorRow;
+    }
+
+    /**
+     * 每列的样式, 填充数据行时使用, 不要修改
+     */
+    CellStyle[] getColumnStyles() {
+        return columnStyles;
+    }
+
+    /**
+     * 输出模板和数据行, 不关闭输出流, 也不dispose工作簿
+     * @param rows          只在第一页从锚定行开始写了数据行的流式工作簿
+     * @param outputStream  输出流
+     * @param compression   压缩方式, null时与POI默认相同
+     */
+    void write(SXSSFWorkbook rows, OutputStream outputStream, Compression compression) throws IOException {
+        SXSSFSheet sheet = (SXSSFSheet) rows.getSheetAt(0);
+        try (ZipPackageWriter writer = new ZipPackageWriter(outputStream, null != compression ? compression : Compression.DEFAULT)) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                if (!sheetEntry.equals(entry.getKey())) {
+                    writer.putEntry(entry.getKey(), new ByteArrayInputStream(entry.getValue()), false);
+                    continue;
+                }
+                try (InputStream sheetStream = new SequenceInputStream(Collections.enumeration(Arrays.asList(
+                        new ByteArrayInputStream(sheetPrefix),
+                        sheet.getWorksheetXMLInputStream(),
+                        new ByteArrayInputStream(sheetSuffix))))) {
+                    writer.putEntry(entry.getKey(), sheetStream, true);
+                }
+            }
+        }
+    }
+
+    /**
+     * 行中是否有非空白的单元格
+     */
+    private static boolean hasValue(Row row) {
+        for (Cell cell : row) {
+            if (cell.getCellType() != Cell.CELL_TYPE_BLANK
+                    && !(cell.getCellType() == Cell.CELL_TYPE_STRING && cell.getStringCellValue().isEmpty())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] readAll(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] bytes = new byte[8192];
+        int read;
+        while ((read = inputStream.read(bytes)) != -1) {
+            buffer.write(bytes, 0, read);
+        }
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.demo.utils.excel;
+
+import com.example.demo.utils.excel.tips.Excel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.util.ClassUtils;
+
+/**
+ * 启动预热
+ * 容器启动后扫描配置的包, 找到所有@Excel实体, 校验注解并提前解析好列信息
+ * 配置错误的实体在启动时就失败, 而不是等到第一次导出
+ * 扫描的包通过 excel.warm-up.packages 配置, 逗号分隔, 不配置则不预热
+ */
+@Configuration
+public class ExcelWarmUp implements ApplicationListener<ContextRefreshedEvent> {
+
+    private Logger logger = LoggerFactory.getLogger(ExcelWarmUp.class);
+
+    @Value("${excel.warm-up.packages:}")
+    private String[] packages;
+
+    // 已经预热过, 子容器刷新时不再重复
+    private volatile boolean warmed;
+
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        if (warmed) {
+            return;
+        }
+        warmed = true;
+
+        Sniffer sniffer = new Sniffer();
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+        scanner.addIncludeFilter(new AnnotationTypeFilter(Excel.class));
+
+        long start = System.currentTimeMillis();
+        int count = 0;
+        for (String basePackage : packages) {
+            if ("".equals(basePackage.trim())) {
+                continue;
+            }
+            for (BeanDefinition beanDefinition : scanner.findCandidateComponents(basePackage.trim())) {
+                Class<?> modelClass = ClassUtils.resolveClassName(beanDefinition.getBeanClassName(),
+                        event.getApplicationContext().getClassLoader());
+                sniffer.warmUp(modelClass);
+                count++;
+            }
+        }
+        logger.info("Excel实体预热完成, 数量:{}, 耗时:{}ms", count, System.currentTimeMillis() - start);
+    }
+}
@@ -2,20 +2,48 @@ package com.example.demo.utils.excel;
 
 
 
+import com.example.demo.utils.excel.goods.ColumnSchema;
+import com.example.demo.utils.excel.goods.Compression;
 import com.example.demo.utils.excel.goods.ExcelException;
+import com.example.demo.utils.excel.goods.ExportBudget;
+import com.example.demo.utils.excel.goods.ExportSort;
 import com.example.demo.utils.excel.goods.FieldColumn;
+import com.example.demo.utils.excel.goods.ReportSpec;
+import com.example.demo.utils.excel.goods.RowCursor;
 import com.example.demo.utils.excel.tips.Excel;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Excel处理器
@@ -26,15 +54,33 @@ public class ExcelWriter {
 
     private Logger logger = LoggerFactory.getLogger(ExcelWriter.class);
 
+    // 动态导出的最大行数, 包括表头
+    private static final int MAX_DYNAMIC_ROWS = 1040000;
+
     // 转化器, list数据与workbook之间的转化
     private ExcelConvertor excelConvertor;
     // 嗅探器, 发现实体类上的注解
     private Sniffer sniffer;
+    // 导出隔板, 限制并发导出数
+    private volatile ExportBulkhead bulkhead;
+    // 异步导出时构建工作簿的线程, 数量为并发数加排队数, 再多的直接拒绝
+    private volatile ExecutorService asyncExecutor;
+    // 打包导出时构建各报表的线程, 数量为并发数, 每个包同时构建的报表数为它占用的导出名额数
+    private volatile ExecutorService bundleExecutor;
+    private volatile int bundleParallelism;
+    // 解析好的导出模板
+    private final Map<String, ExcelTemplate> templates = new ConcurrentHashMap<>();
 
     // 单例起来
     private ExcelWriter() {
         excelConvertor = new ExcelConvertor();
         sniffer = new Sniffer();
+        ExportBudget budget = new ExportBudget();
+        bulkhead = new ExportBulkhead(budget);
+        asyncExecutor = newAsyncExecutor(budget);
+        bundleExecutor = newBundleExecutor(budget);
+        bundleParallelism = Math.max(1, budget.getMaxConcurrent());
+        excelConvertor.setRowWindowBytes(budget.getRowWindowBytes());
     }
 
     private static class ExcelSingle {
@@ -45,6 +91,37 @@ public class ExcelWriter {
         return ExcelSingle.instance;
     }
 
+    /**
+     * 配置导出预算
+     * @param budget 导出预算
+     */
+    public void setExportBudget(ExportBudget budget) {
+        bulkhead = new ExportBulkhead(budget);
+        ExecutorService previous = asyncExecutor;
+        asyncExecutor = newAsyncExecutor(budget);
+        previous.shutdown();
+        ExecutorService previousBundle = bundleExecutor;
+        bundleExecutor = newBundleExecutor(budget);
+        bundleParallelism = Math.max(1, budget.getMaxConcurrent());
+        previousBundle.shutdown();
+        excelConvertor.setRowWindowBytes(budget.getRowWindowBytes());
+    }
+
+    /**
+     * 导出隔板, 用于获取排队数, 拒绝数等指标
+     */
+    public ExportBulkhead bulkhead() {
+        return bulkhead;
+    }
+
+    /**
+     * 驻留行数的指标, 用于查看按预算选定的驻留行数
+     * 所有导出共用一份, 反映最近记录的那个导出
+     */
+    public RowWindowMetrics rowWindowMetrics() {
+        return excelConvertor.getRowWindowMetrics();
+    }
+
     /**
      * 针对只参与一张excel导出的实体,可使用此方法
      * 即实体上只有一个@Excel注解
@@ -69,15 +146,178 @@ public class ExcelWriter {
      * @param <T>        实体泛型
      */
     public <T> void exportToExcel(HttpServletResponse response, List<T> data, Class<T> modelClass, String fileName) {
+        exportToExcel(response, data, modelClass, fileName, null);
+    }
+
+    /**
+     * 导出Excel报表, 指定压缩方式
+     *
+     * @param response
+     * @param data        将要导出的数据
+     * @param modelClass  实体类型信息
+     * @param fileName    导出后的文件名, 同上
+     * @param compression 压缩方式, null时与POI默认相同
+     * @param <T>         实体泛型
+     */
+    public <T> void exportToExcel(HttpServletResponse response, List<T> data, Class<T> modelClass, String fileName, Compression compression) {
+        Supplier<SXSSFWorkbook> workbookSupplier = prepareExport(response, data, modelClass, fileName);
+
+        // 占用导出名额, 繁忙时排队
+        ExportBulkhead currentBulkhead = bulkhead;
+        int weight = currentBulkhead.acquire(data.size());
+        try {
+            writeWorkbook(response, workbookSupplier.get(), compression);
+        } finally {
+            currentBulkhead.release(weight);
+        }
+    }
+
+    /**
+     * 异步导出Excel报表, 需要Servlet 3.1, 且请求的Servlet和Filter都支持异步
+     * 请求线程只做校验, 立即返回; 工作簿在导出线程中构建成临时文件, 再在连接可写时分块写出
+     * 构建完成即归还导出名额, 慢速的客户端不占用名额和线程
+     * 校验不通过时同步抛出ExcelException, 之后的失败以503/500响应
+     *
+     * @param request
+     * @param response
+     * @param data        将要导出的数据
+     * @param modelClass  实体类型信息
+     * @param fileName    导出后的文件名, 同上
+     * @param compression 压缩方式, null时与POI默认相同
+     * @param <T>         实体泛型
+     */
+    public <T> void exportToExcelAsync(HttpServletRequest request, HttpServletResponse response, List<T> data,
+                                       Class<T> modelClass, String fileName, Compression compression) {
+        Supplier<SXSSFWorkbook> workbookSupplier = prepareExport(response, data, modelClass, fileName);
+        exportAsync(request, data.size(), workbookSupplier, compression);
+    }
+
+    /**
+     * 校验导出数据, 配置response, 返回工作簿的构建过程
+     */
+    private <T> Supplier<SXSSFWorkbook> prepareExport(HttpServletResponse response, List<T> data, Class<T> modelClass, String fileName) {
 
         // 找到导出文件的信息@Excel
         Excel excelAnnotation = sniffer.findExcel(modelClass, fileName);
+        prepareResponse(response, excelAnnotation, data.size(), fileName);
+
+        return workbookBuilder(data, modelClass, fileName, excelAnnotation);
+    }
+
+    /**
+     * 实体导出的工作簿的构建过程
+     */
+    private <T> Supplier<SXSSFWorkbook> workbookBuilder(List<T> data, Class<T> modelClass, String fileName, Excel excelAnnotation) {
+
+        // 优先使用编译期生成的映射, 没有时找到导出列的信息 @Column
+        ExcelMapper<T> mapper = ExcelMappers.find(modelClass, fileName);
+        List<FieldColumn> fieldColumnList = null == mapper ? sniffer.findFieldColumns(modelClass, fileName) : null;
+
+        // 创建Covertor
+        return () -> null != mapper
+                ? excelConvertor.createExcel(data, mapper, excelAnnotation.widthSample())
+                : excelConvertor.createExcel(data, fieldColumnList, excelAnnotation.widthSample());
+    }
+
+    /**
+     * 把多张报表打包成一个zip导出, 如"某门店的所有报表"
+     * 开始输出前按同时构建的报表数一次占用导出名额, 繁忙时在这里排队或被拒绝, 开始输出后不再等待名额
+     * 各报表在导出线程中取数据并构建, 同时构建的不超过占到的名额数
+     * 哪张先完成就先写进zip并flush, 不按声明的顺序, 慢的报表不挡住已经完成的
+     * 报表的实体和文件名在开始前校验; 之后任何一张失败时, 客户端收到的是不完整的zip
+     *
+     * @param response
+     * @param reports     各报表, 包中的文件名为报表的文件名, 重名时加序号
+     * @param bundleName  zip的文件名
+     * @param compression 各报表的压缩方式, null时与POI默认相同
+     */
+    public void exportBundle(HttpServletResponse response, List<ReportSpec<?>> reports, String bundleName, Compression compression) {
+        // 先校验所有报表, 出错时还没有开始输出
+        List<Callable<ReportBundle.Part>> builders = new ArrayList<>(reports.size());
+        Set<String> names = new HashSet<>();
+        for (ReportSpec<?> report : reports) {
+            Excel excelAnnotation = sniffer.findExcel(report.getModelClass(), report.getFileName());
+            String baseName = null != report.getFileName() ? report.getFileName() : excelAnnotation.value()[0];
+            String name = baseName + ".xlsx";
+            for (int i = 2; !names.add(name); i++) {
+                name = baseName + "(" + i + ").xlsx";
+            }
+            String entryName = name;
+            builders.add(() -> buildPart(report, excelAnnotation, entryName, compression));
+        }
+
+        // 整个包占用导出名额, 排队超时在输出之前抛出
+        ExportBulkhead currentBulkhead = bulkhead;
+        int parallelism = currentBulkhead.acquireParallel(Math.min(builders.size(), bundleParallelism));
+        try {
+            writeBundle(response, builders, parallelism, bundleName);
+        } finally {
+            currentBulkhead.release(parallelism);
+        }
+    }
+
+    /**
+     * 配置response, 构建并输出zip, 调用时已经占用了parallelism个导出名额
+     */
+    private void writeBundle(HttpServletResponse response, List<Callable<ReportBundle.Part>> builders, int parallelism,
+                             String bundleName) {
+        // 文件名转码,如果发生意外就用当前毫秒数当文件名
+        String encodingName = String.valueOf(System.currentTimeMillis());
+        try {
+            encodingName = URLEncoder.encode(bundleName != null ? bundleName : "没有名字的导出包", "utf-8");
+        } catch (UnsupportedEncodingException e) {
+            logger.warn("导出excel时,文件名转码失败, 文件名:{}", bundleName);
+        }
+
+        // 配置response
+        response.setContentType("application/zip");
+        response.setHeader("Content-Disposition", "attachment;filename=" + encodingName + new DateTime().toString("yyyyMMddHHmmss") + ".zip");
+
+        OutputStream outputStream = null;
+        try {
+            outputStream = response.getOutputStream();
+            ReportBundle.write(bundleExecutor, parallelism, builders, outputStream);
+        } catch (IOException e) {
+            logger.error("打包导出异常 -- {}", e.getMessage());
+        } catch (ExcelException e) {
+            // 不关闭输出流, 还没有输出时调用方可以正常返回错误, 已经输出了一部分时客户端收到截断的zip
+            if (response.isCommitted()) {
+                logger.error("打包导出异常, 已输出的zip不完整 -- {}", e.getMessage());
+            }
+            throw e;
+        }
+
+        try {
+            if (null != outputStream) {
+                outputStream.close();
+            }
+            response.flushBuffer();
+        } catch (IOException e) {
+            logger.error("导出时关闭资源出错.{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 在导出线程中取数据, 构建一张报表到临时文件
+     * 使用整个包占用的名额, 不再单独占用, 数据在占到名额之后才取
+     */
+    private <T> ReportBundle.Part buildPart(ReportSpec<T> report, Excel excelAnnotation, String entryName,
+                                            Compression compression) throws IOException {
+        List<T> data = report.getDataSource().get();
         if (excelAnnotation.limit() < data.size()) {
-            throw new ExcelException("导出数据数量超出最大限制,最大限制为:" + excelAnnotation.limit() + "条");
+            throw new ExcelException(entryName + "导出数据数量超出最大限制,最大限制为:" + excelAnnotation.limit() + "条");
         }
+        Supplier<SXSSFWorkbook> workbookSupplier = workbookBuilder(data, report.getModelClass(), report.getFileName(), excelAnnotation);
+        return ReportBundle.part(entryName, writeTempFile(workbookSupplier.get(), compression));
+    }
 
-        // 找到导出列的信息 @Column
-        List<FieldColumn> fieldColumnList = sniffer.findFieldColumns(modelClass, fileName);
+    /**
+     * 校验实体导出的行数, 配置response
+     */
+    private void prepareResponse(HttpServletResponse response, Excel excelAnnotation, int rows, String fileName) {
+        if (excelAnnotation.limit() < rows) {
+            throw new ExcelException("导出数据数量超出最大限制,最大限制为:" + excelAnnotation.limit() + "条");
+        }
 
         // 文件名转码,如果发生意外就用当前毫秒数当文件名
         String encodingName = String.valueOf(System.currentTimeMillis());
@@ -91,34 +331,89 @@ public class ExcelWriter {
         response.setCharacterEncoding("UTF-8");
         response.setContentType("application/vnd.ms-excel");
         response.setHeader("Content-Disposition", "attachment;filename=" + encodingName+new DateTime().toString("yyyyMMddHHmmss")+ ".xlsx");
+    }
 
-        // 创建Covertor
-        SXSSFWorkbook workbook = excelConvertor.createExcel(data, fieldColumnList);
+    /**
+     * 套用模板导出Excel报表
+     * 模板的第一页在锚定行之前是表头区域, 原样保留; 数据从锚定行开始写, 样式取锚定行上对应列的样式
+     * 模板按文件, 锚定行和实体缓存, 只在第一次使用或文件被修改后解析, 之后的导出只流式生成数据行
+     *
+     * @param response
+     * @param data        将要导出的数据
+     * @param modelClass  实体类型信息
+     * @param fileName    导出后的文件名, 同上
+     * @param template    模板文件, xlsx
+     * @param anchorRow   锚定行, 从0开始, 之后不能有内容
+     * @param compression 压缩方式, null时与POI默认相同
+     * @param <T>         实体泛型
+     */
+    public <T> void exportWithTemplate(HttpServletResponse response, List<T> data, Class<T> modelClass, String fileName,
+                                       File template, int anchorRow, Compression compression) {
+        Excel excelAnnotation = sniffer.findExcel(modelClass, fileName);
+        if (SpreadsheetVersion.EXCEL2007.getMaxRows() - anchorRow < data.size()) {
+            throw new ExcelException("模板导出数据数量超出工作表的最大行数:" + (SpreadsheetVersion.EXCEL2007.getMaxRows() - anchorRow) + "条");
+        }
 
-        // 输出excel
-        OutputStream outputStream = null;
+        ExcelMapper<T> mapper = ExcelMappers.find(modelClass, fileName);
+        List<FieldColumn> fieldColumnList = null == mapper ? sniffer.findFieldColumns(modelClass, fileName) : null;
+        ExcelTemplate excelTemplate = findTemplate(template, anchorRow, modelClass, fileName, stylePool ->
+                null != mapper ? mapper.columnStyles(stylePool) : stylePool.columnStyles(fieldColumnList));
+
+        prepareResponse(response, excelAnnotation, data.size(), fileName);
+
+        // 占用导出名额, 繁忙时排队
+        ExportBulkhead currentBulkhead = bulkhead;
+        int weight = currentBulkhead.acquire(data.size());
         try {
-            outputStream = response.getOutputStream();
-            outputStream.flush();
-            workbook.write(outputStream);
-        } catch (IOException e) {
-            logger.error("导出Excel异常 -- {}", e.getMessage());
+            SXSSFWorkbook rows = null != mapper
+                    ? excelConvertor.createRows(data, mapper, excelTemplate.getColumnStyles(), anchorRow)
+                    : excelConvertor.createRows(data, fieldColumnList, excelTemplate.getColumnStyles(), anchorRow);
+            writeWorkbook(response, rows, excelTemplate, compression);
         } finally {
-            try {
-                if (null != outputStream) {
-                    outputStream.close();
-                }
-            } catch (IOException e) {
-                logger.error("导出时关闭资源出错.{}", e.getMessage());
-            }
+            currentBulkhead.release(weight);
+        }
+    }
 
-            workbook.dispose();
+    /**
+     * 取缓存的模板, 没有或文件已被修改时重新解析
+     * 列的样式属于模板, 所以同一个模板文件按锚定行和实体分别缓存
+     */
+    private <T> ExcelTemplate findTemplate(File template, int anchorRow, Class<T> modelClass, String fileName,
+                                           Function<StylePool, CellStyle[]> styleFactory) {
+        String key = template.getAbsolutePath() + '#' + anchorRow + '#' + modelClass.getName() + '#' + fileName;
+        return templates.compute(key, (k, cached) -> null != cached && !cached.isStale()
+                ? cached
+                : ExcelTemplate.load(template, anchorRow, styleFactory));
+    }
 
-            try {
-                response.flushBuffer();
-            } catch (IOException e) {
-                logger.error("导出时关闭资源出错.{}", e.getMessage());
-            }
+    /**
+     * 排序导出Excel报表, 可以按第一个排序列分组并插入小计行
+     * 不要求调用方先把数据排好序放进内存: 数据只遍历一次, 按段排序, 超出一段时落盘再归并
+     * 排序列和小计列按@Column的列名指定, 总是按反射取值
+     *
+     * @param response
+     * @param data        将要导出的数据, 不是Collection时只在写出时检查行数
+     * @param modelClass  实体类型信息
+     * @param fileName    导出后的文件名, 同上
+     * @param sort        排序和分组
+     * @param compression 压缩方式, null时与POI默认相同
+     * @param <T>         实体泛型
+     */
+    public <T> void exportSorted(HttpServletResponse response, Iterable<T> data, Class<T> modelClass, String fileName,
+                                 ExportSort sort, Compression compression) {
+        Excel excelAnnotation = sniffer.findExcel(modelClass, fileName);
+        int rows = data instanceof Collection ? ((Collection<?>) data).size() : 0;
+        List<FieldColumn> fieldColumnList = sniffer.findFieldColumns(modelClass, fileName);
+        prepareResponse(response, excelAnnotation, rows, fileName);
+
+        // 占用导出名额, 繁忙时排队
+        ExportBulkhead currentBulkhead = bulkhead;
+        int weight = currentBulkhead.acquire(rows);
+        try {
+            writeWorkbook(response, excelConvertor.createSortedExcel(data.iterator(), fieldColumnList, sort,
+                    excelAnnotation.limit(), excelAnnotation.widthSample()), compression);
+        } finally {
+            currentBulkhead.release(weight);
         }
     }
 
@@ -141,11 +436,89 @@ public class ExcelWriter {
      * @param <T>
      */
     public <T> void exportToExcel(HttpServletResponse response, List headData, List bodyData, String fileName) {
+        exportToExcel(response, headData, bodyData, fileName, null);
+    }
+
+    /**
+     * 导出动态的数据表, 指定压缩方式
+     * @param response
+     * @param headData
+     * @param bodyData
+     * @param fileName
+     * @param compression 压缩方式, null时与POI默认相同
+     */
+    public void exportToExcel(HttpServletResponse response, List headData, List bodyData, String fileName, Compression compression) {
+        Supplier<SXSSFWorkbook> workbookSupplier = prepareExport(response, headData, bodyData, fileName);
+
+        // 占用导出名额, 繁忙时排队
+        ExportBulkhead currentBulkhead = bulkhead;
+        int weight = currentBulkhead.acquire(bodyData.size());
+        try {
+            writeWorkbook(response, workbookSupplier.get(), compression);
+        } finally {
+            currentBulkhead.release(weight);
+        }
+    }
+
+    /**
+     * 导出列式数据
+     * 表结构声明或推断一次, 数据从游标中逐行读取, 基本类型的列不装箱, 单元格不逐个判断类型
+     * 适用于从数据库结果集或基本类型数组直接导出
+     * @param response
+     * @param schema        表结构
+     * @param cursor        数据源, 在当前线程中读完
+     * @param fileName
+     * @param compression   压缩方式, null时与POI默认相同
+     */
+    public void exportToExcel(HttpServletResponse response, ColumnSchema schema, RowCursor cursor, String fileName, Compression compression) {
+        // 行数已知时提前检查, 未知时写的过程中检查
+        int rows = cursor.rowCount();
+        prepareResponse(response, Math.max(rows, 0), fileName);
+
+        // 占用导出名额, 繁忙时排队
+        ExportBulkhead currentBulkhead = bulkhead;
+        int weight = currentBulkhead.acquire(Math.max(rows, 0));
+        try {
+            writeWorkbook(response, excelConvertor.createColumnarExcel(schema, cursor, MAX_DYNAMIC_ROWS - 1, 0), compression);
+        } finally {
+            currentBulkhead.release(weight);
+        }
+    }
+
+    /**
+     * 异步导出动态的数据表, 同{@link #exportToExcelAsync(HttpServletRequest, HttpServletResponse, List, Class, String, Compression)}
+     * @param request
+     * @param response
+     * @param headData
+     * @param bodyData
+     * @param fileName
+     * @param compression 压缩方式, null时与POI默认相同
+     */
+    public void exportToExcelAsync(HttpServletRequest request, HttpServletResponse response, List headData, List bodyData,
+                                   String fileName, Compression compression) {
+        Supplier<SXSSFWorkbook> workbookSupplier = prepareExport(response, headData, bodyData, fileName);
+        exportAsync(request, bodyData.size(), workbookSupplier, compression);
+    }
+
+    /**
+     * 校验动态导出的数据, 配置response, 返回工作簿的构建过程
+     */
+    private Supplier<SXSSFWorkbook> prepareExport(HttpServletResponse response, List headData, List bodyData, String fileName) {
+        prepareResponse(response, bodyData.size(), fileName);
+
+        // 创建Covertor
+        return () -> excelConvertor.createDynamicExcel(headData, bodyData);
+    }
+
+    /**
+     * 校验动态导出的行数, 配置response
+     */
+    private void prepareResponse(HttpServletResponse response, int rows, String fileName) {
 
         // 找到导出文件的信息@Excel
         //这怎么才能直接调用注解里的方法拿到值 最破费
-        if (1040000 < bodyData.size()+1) {
-            throw new ExcelException("导出数据数量超出最大限制,最大限制为:" + 1040000 + "条");
+        if (MAX_DYNAMIC_ROWS < rows + 1) {
+            throw new ExcelException("导出数据数量超出最大限制,最大限制为:" + MAX_DYNAMIC_ROWS + "条");
         }
 
         // 文件名转码,如果发生意外就用当前毫秒数当文件名
@@ -160,16 +533,150 @@ public class ExcelWriter {
         response.setCharacterEncoding("UTF-8");
         response.setContentType("application/vnd.ms-excel");
         response.setHeader("Content-Disposition", "attachment;filename=" + encodingName + ".xlsx");
+    }
 
-        // 创建Covertor
-        SXSSFWorkbook workbook = excelConvertor.createDynamicExcel(headData, bodyData);
+    /**
+     * 开始异步导出, 把构建交给导出线程
+     */
+    private void exportAsync(HttpServletRequest request, int rows, Supplier<SXSSFWorkbook> workbookSupplier, Compression compression) {
+        AsyncContext asyncContext = request.startAsync();
+        // 慢速客户端下载时间不可预期, 不设超时, 由连接断开结束
+        asyncContext.setTimeout(0);
+        try {
+            asyncExecutor.execute(() -> produce(asyncContext, rows, workbookSupplier, compression));
+        } catch (RejectedExecutionException e) {
+            failAsync(asyncContext, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "导出繁忙, 请稍后再试");
+        }
+    }
+
+    /**
+     * 在导出线程中构建工作簿到临时文件, 然后交给{@link AsyncFileWriter}写出
+     */
+    private void produce(AsyncContext asyncContext, int rows, Supplier<SXSSFWorkbook> workbookSupplier, Compression compression) {
+        ExportBulkhead currentBulkhead = bulkhead;
+        int weight;
+        try {
+            weight = currentBulkhead.acquire(rows);
+        } catch (ExcelException e) {
+            failAsync(asyncContext, HttpServletResponse.SC_SERVICE_UNAVAILABLE, e.getMessage());
+            return;
+        }
+
+        File file;
+        try {
+            file = writeTempFile(workbookSupplier.get(), compression);
+        } catch (Exception e) {
+            logger.error("导出Excel异常 -- {}", e.getMessage());
+            failAsync(asyncContext, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "导出Excel异常");
+            return;
+        } finally {
+            currentBulkhead.release(weight);
+        }
 
+        try {
+            // 失败时start()已经关闭并删除了临时文件
+            new AsyncFileWriter(asyncContext, file).start();
+        } catch (IOException | RuntimeException e) {
+            logger.error("导出Excel异常 -- {}", e.getMessage());
+            asyncContext.complete();
+        }
+    }
+
+    /**
+     * 把工作簿输出到临时文件, 输出后释放工作簿的临时文件
+     */
+    private File writeTempFile(SXSSFWorkbook workbook, Compression compression) throws IOException {
+        File file = File.createTempFile("excel-export-", ".xlsx");
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            if (null == compression) {
+                workbook.write(outputStream);
+            } else {
+                WorkbookPackager.write(workbook, outputStream, compression);
+            }
+        } catch (IOException | RuntimeException e) {
+            if (!file.delete()) {
+                logger.warn("删除导出临时文件失败, 文件:{}", file.getPath());
+            }
+            throw e;
+        } finally {
+            workbook.dispose();
+        }
+        return file;
+    }
+
+    /**
+     * 异步导出失败, 还没有写出内容, 改为错误响应
+     */
+    private void failAsync(AsyncContext asyncContext, int status, String message) {
+        HttpServletResponse response = (HttpServletResponse) asyncContext.getResponse();
+        try {
+            response.reset();
+            response.sendError(status, message);
+        } catch (IOException | IllegalStateException e) {
+            logger.error("导出时返回错误响应出错.{}", e.getMessage());
+        } finally {
+            asyncContext.complete();
+        }
+    }
+
+    private static ExecutorService newAsyncExecutor(ExportBudget budget) {
+        AtomicInteger sequence = new AtomicInteger();
+        int threads = budget.getMaxConcurrent() + budget.getMaxQueued();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "excel-export-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static ExecutorService newBundleExecutor(ExportBudget budget) {
+        AtomicInteger sequence = new AtomicInteger();
+        int threads = Math.max(1, budget.getMaxConcurrent());
+        // 提交的报表数受各包占用的导出名额限制, 不超过线程数, 队列只是余量;
+        // 调整预算的前后名额与线程数不一致时, 放不下的在提交的线程里构建, 不让已经开始输出的包失败
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads), runnable -> {
+                    Thread thread = new Thread(runnable, "excel-bundle-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * 把工作簿写到response里, 写完后释放工作簿的临时文件
+     * @param response
+     * @param workbook      将要输出的工作簿
+     * @param compression   压缩方式, null时使用POI自己的输出
+     */
+    private void writeWorkbook(HttpServletResponse response, SXSSFWorkbook workbook, Compression compression) {
+        writeWorkbook(response, workbook, null, compression);
+    }
+
+    /**
+     * 把工作簿写到response里, 写完后释放工作簿的临时文件
+     * @param response
+     * @param workbook      将要输出的工作簿
+     * @param template      套用的模板, null表示不套用
+     * @param compression   压缩方式, 不套用模板且为null时使用POI自己的输出
+     */
+    private void writeWorkbook(HttpServletResponse response, SXSSFWorkbook workbook, ExcelTemplate template, Compression compression) {
         // 输出excel
         OutputStream outputStream = null;
         try {
             outputStream = response.getOutputStream();
             outputStream.flush();
-            workbook.write(outputStream);
+            if (null != template) {
+                template.write(workbook, outputStream, compression);
+            } else if (null == compression) {
+                workbook.write(outputStream);
+            } else {
+                WorkbookPackager.write(workbook, outputStream, compression);
+            }
         } catch (IOException e) {
             logger.error("导出Excel异常 -- {}", e.getMessage());
         } finally {
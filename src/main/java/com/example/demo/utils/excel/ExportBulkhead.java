@@ -0,0 +1,122 @@
+package com.example.demo.utils.excel;
+
+import com.example.demo.utils.excel.goods.ExcelException;
+import com.example.demo.utils.excel.goods.ExportBudget;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 导出隔板
+ * 月底大家一起导出时, 同时构建的工作簿数量有上限, 超出的排队, 排不上的拒绝
+ * 负载高时延迟平稳增长, 而不是一起GC到崩
+ */
+public class ExportBulkhead {
+
+    private Logger logger = LoggerFactory.getLogger(ExportBulkhead.class);
+
+    private final ExportBudget budget;
+    // 并发名额
+    private final Semaphore permits;
+    // 排队中的数量
+    private final AtomicInteger queued = new AtomicInteger();
+    // 被拒绝的次数
+    private final AtomicLong rejected = new AtomicLong();
+
+    public ExportBulkhead(ExportBudget budget) {
+        this.budget = budget;
+        this.permits = new Semaphore(budget.getMaxConcurrent(), true);
+    }
+
+    /**
+     * 占用导出名额, 名额不足时排队
+     * 超时或排队已满时抛出ExcelException
+     * 成功后必须调用{@link #release(int)}归还
+     * @param rows  导出的行数, 用于加权
+     * @return      占用的名额数
+     */
+    public int acquire(int rows) {
+        return acquireWeight(weightOf(rows), "行数:" + rows);
+    }
+
+    /**
+     * 按并行数占用导出名额, 用于打包导出: 整个包开始输出前一次占用, 同时构建的每张报表一个名额
+     * 排队超时只会发生在输出之前, 已经开始输出的包不会因为名额被中断
+     * 成功后必须调用{@link #release(int)}归还
+     * @param parallelism   希望同时构建的报表数
+     * @return              占用的名额数, 最少1个, 最多全部, 即实际的并行数
+     */
+    public int acquireParallel(int parallelism) {
+        return acquireWeight(Math.max(1, Math.min(budget.getMaxConcurrent(), parallelism)), "并行数:" + parallelism);
+    }
+
+    private int acquireWeight(int weight, String request) {
+        if (permits.tryAcquire(weight)) {
+            return weight;
+        }
+
+        if (queued.incrementAndGet() > budget.getMaxQueued()) {
+            queued.decrementAndGet();
+            rejected.incrementAndGet();
+            throw new ExcelException("导出繁忙, 请稍后再试");
+        }
+        try {
+            if (!permits.tryAcquire(weight, budget.getQueueTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                rejected.incrementAndGet();
+                logger.warn("导出排队超时, {}, 排队数:{}", request, queued.get());
+                throw new ExcelException("导出繁忙, 请稍后再试");
+            }
+            return weight;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejected.incrementAndGet();
+            throw new ExcelException("导出排队被中断");
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    /**
+     * 归还导出名额
+     * @param weight {@link #acquire(int)}的返回值
+     */
+    public void release(int weight) {
+        permits.release(weight);
+    }
+
+    /**
+     * 当前排队数
+     */
+    public int queued() {
+        return queued.get();
+    }
+
+    /**
+     * 当前占用的名额数
+     */
+    public int active() {
+        return budget.getMaxConcurrent() - permits.availablePermits();
+    }
+
+    /**
+     * 累计被拒绝的次数
+     */
+    public long rejected() {
+        return rejected.get();
+    }
+
+    /**
+     * 按行数计算占用的名额, 最少1个, 最多全部
+     */
+    private int weightOf(int rows) {
+        if (budget.getRowsPerPermit() <= 0) {
+            return 1;
+        }
+        int weight = (rows + budget.getRowsPerPermit() - 1) / budget.getRowsPerPermit();
+        return Math.max(1, Math.min(budget.getMaxConcurrent(), weight));
+    }
+}
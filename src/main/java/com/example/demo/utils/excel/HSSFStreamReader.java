@@ -0,0 +1,195 @@
+package com.example.demo.utils.excel;
+
+import com.example.demo.utils.excel.goods.ImportProgress;
+import com.example.demo.utils.excel.goods.RowHandler;
+import org.apache.poi.hssf.eventusermodel.FormatTrackingHSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.eventusermodel.MissingRecordAwareHSSFListener;
+import org.apache.poi.hssf.eventusermodel.dummyrecord.LastCellOfRowDummyRecord;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.CellValueRecordInterface;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.filesystem.DirectoryNode;
+import org.apache.poi.poifs.filesystem.DocumentEntry;
+import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.DateUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * xls流式读取器
+ * 基于HSSF的事件模型, 逐条处理记录, 不创建HSSFWorkbook
+ */
+public class HSSFStreamReader implements StreamReader {
+
+    @Override
+    public void read(File file, RowHandler handler, ImportProgress progress) throws IOException {
+        try (NPOIFSFileSystem fileSystem = new NPOIFSFileSystem(file, true)) {
+            // 自己打开工作簿流, 以便计算读取的字节数
+            DirectoryNode root = fileSystem.getRoot();
+            DocumentEntry workbookEntry = (DocumentEntry) root.getEntry(HSSFWorkbook.getWorkbookDirEntryName(root));
+            try (CountingInputStream workbookStream = new CountingInputStream(root.createDocumentInputStream(workbookEntry))) {
+                SheetListener sheetListener = new SheetListener(handler, workbookStream, progress);
+                FormatTrackingHSSFListener formatListener = new FormatTrackingHSSFListener(
+                        new MissingRecordAwareHSSFListener(sheetListener));
+                sheetListener.formatListener = formatListener;
+
+                if (null != progress) {
+                    progress.start(workbookEntry.getSize());
+                }
+                HSSFRequest request = new HSSFRequest();
+                request.addListenerForAllRecords(formatListener);
+                new HSSFEventFactory().processEvents(request, workbookStream);
+                if (null != progress) {
+                    progress.finish(workbookStream.getCount());
+                }
+            }
+        }
+    }
+
+    /**
+     * 记录监听器, 只关心第一页
+     */
+    private static class SheetListener implements HSSFListener {
+
+        private final RowHandler handler;
+        // 进度, null表示不报告
+        private final CountingInputStream workbookStream;
+        private final ImportProgress progress;
+        // 用于判断数字单元格是否为日期
+        private FormatTrackingHSSFListener formatListener;
+        // 共享字符串表, 在工作表记录之前出现
+        private SSTRecord sstRecord;
+        // 当前是第几页, -1表示还在workbook全局记录中
+        private int sheetIndex = -1;
+        // 当前行的值, 每行复用
+        private final List<Object> values = new ArrayList<>();
+        // 结果为字符串的公式所在列, 字符串在紧随其后的StringRecord中, -1表示没有
+        private int formulaStringColumn = -1;
+
+        SheetListener(RowHandler handler, CountingInputStream workbookStream, ImportProgress progress) {
+            this.handler = handler;
+            this.workbookStream = workbookStream;
+            this.progress = progress;
+        }
+
+        @Override
+        public void processRecord(Record record) {
+            switch (record.getSid()) {
+                case BOFRecord.sid:
+                    if (((BOFRecord) record).getType() == BOFRecord.TYPE_WORKSHEET) {
+                        sheetIndex++;
+                    }
+                    return;
+                case SSTRecord.sid:
+                    sstRecord = (SSTRecord) record;
+                    return;
+                default:
+                    break;
+            }
+
+            // 目前只支持1页
+            if (sheetIndex != 0) {
+                return;
+            }
+
+            if (record instanceof LastCellOfRowDummyRecord) {
+                handler.onRow(((LastCellOfRowDummyRecord) record).getRow(), values);
+                values.clear();
+                if (null != progress) {
+                    progress.onRow(workbookStream.getCount());
+                }
+                return;
+            }
+
+            switch (record.getSid()) {
+                case LabelSSTRecord.sid:
+                    LabelSSTRecord labelSSTRecord = (LabelSSTRecord) record;
+                    putValue(labelSSTRecord.getColumn(), sstRecord.getString(labelSSTRecord.getSSTIndex()).getString());
+                    break;
+                case LabelRecord.sid:
+                    LabelRecord labelRecord = (LabelRecord) record;
+                    putValue(labelRecord.getColumn(), labelRecord.getValue());
+                    break;
+                case NumberRecord.sid:
+                    NumberRecord numberRecord = (NumberRecord) record;
+                    putValue(numberRecord.getColumn(), numericValue(numberRecord, numberRecord.getValue()));
+                    break;
+                case BoolErrRecord.sid:
+                    BoolErrRecord boolErrRecord = (BoolErrRecord) record;
+                    if (boolErrRecord.isBoolean()) {
+                        putValue(boolErrRecord.getColumn(), boolErrRecord.getBooleanValue());
+                    }
+                    break;
+                case FormulaRecord.sid:
+                    formulaValue((FormulaRecord) record);
+                    break;
+                case StringRecord.sid:
+                    if (formulaStringColumn >= 0) {
+                        putValue(formulaStringColumn, ((StringRecord) record).getString());
+                        formulaStringColumn = -1;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        /**
+         * 公式单元格, 取文件中缓存的结果, 不计算
+         */
+        private void formulaValue(FormulaRecord record) {
+            switch (record.getCachedResultType()) {
+                case Cell.CELL_TYPE_NUMERIC:
+                    putValue(record.getColumn(), numericValue(record, record.getValue()));
+                    break;
+                case Cell.CELL_TYPE_STRING:
+                    if (record.hasCachedResultString()) {
+                        formulaStringColumn = record.getColumn();
+                    } else {
+                        putValue(record.getColumn(), "");
+                    }
+                    break;
+                case Cell.CELL_TYPE_BOOLEAN:
+                    putValue(record.getColumn(), record.getCachedBooleanValue());
+                    break;
+                default:
+                    // 错误结果与普通错误单元格一样, 不读取
+                    break;
+            }
+        }
+
+        /**
+         * 数字单元格, 日期格式的转成Date
+         */
+        private Object numericValue(CellValueRecordInterface record, double value) {
+            int formatIndex = formatListener.getFormatIndex(record);
+            String formatString = formatListener.getFormatString(record);
+            if (DateUtil.isADateFormat(formatIndex, formatString) && DateUtil.isValidExcelDate(value)) {
+                return DateUtil.getJavaDate(value);
+            }
+            return value;
+        }
+
+        private void putValue(int column, Object value) {
+            while (values.size() <= column) {
+                values.add(null);
+            }
+            values.set(column, value);
+        }
+    }
+}
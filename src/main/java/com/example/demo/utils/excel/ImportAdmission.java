@@ -0,0 +1,241 @@
+package com.example.demo.utils.excel;
+
+import com.example.demo.utils.excel.goods.ExcelException;
+import com.example.demo.utils.excel.goods.ExcelType;
+import com.example.demo.utils.excel.goods.ImportBudget;
+import com.example.demo.utils.excel.goods.ImportEstimate;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * 导入准入控制
+ * 解析之前先看zip目录, 估算行数和内存, 决定拒绝, 排队还是直接读取
+ * 一个超大或者zip炸弹一样的文件不应该拖垮整个节点
+ */
+public class ImportAdmission {
+
+    private Logger logger = LoggerFactory.getLogger(ImportAdmission.class);
+
+    // 每个单元格读成实体后大约占用的内存
+    private static final long CELL_BYTES = 64;
+    // xls的共享字符串读到堆里后的膨胀系数, UTF-16加对象头; xlsx的共享字符串落盘, 不占堆
+    private static final long SHARED_STRINGS_FACTOR = 3;
+    // 落盘导入时每行只在堆上保留偏移
+    private static final long SPILLED_ROW_BYTES = 8;
+    // 没有dimension时, sheet xml中平均每个单元格的字节数
+    private static final long XML_BYTES_PER_CELL = 40;
+    // xls中平均每个单元格记录的字节数
+    private static final long RECORD_BYTES_PER_CELL = 16;
+    // 预算的计数单位, 信号量按KB计
+    private static final long PERMIT_BYTES = 1024;
+
+    // <dimension ref="A1:C1000"/>
+    private static final Pattern DIMENSION = Pattern.compile("<(?:\\w+:)?dimension ref=\"(?:([A-Z]+)(\\d+):)?([A-Z]+)(\\d+)\"");
+
+    private final ImportBudget budget;
+    // 内存预算
+    private final Semaphore memoryPermits;
+    // 排队中的数量
+    private final AtomicInteger queued = new AtomicInteger();
+
+    public ImportAdmission(ImportBudget budget) {
+        this.budget = budget;
+        this.memoryPermits = new Semaphore(toPermits(budget.getMemoryBudgetBytes()), true);
+    }
+
+    /**
+     * 准入检查, 通过后占用内存预算
+     * 预算不足时排队等待, 超时或超出限制时抛出ExcelException
+     * 通过后必须调用{@link #release(ImportEstimate)}归还预算
+     * @param file  上传的文件
+     * @param type  文件格式
+     * @return      预估信息
+     */
+    public ImportEstimate admit(File file, ExcelType type) {
+        return admit(file, type, false);
+    }
+
+    /**
+     * 准入检查, 同上
+     * @param file      上传的文件
+     * @param type      文件格式
+     * @param spilled   是否读到落盘的行存储, 是时单元格不占堆内存, 只算xls的共享字符串和行偏移
+     * @return          预估信息
+     */
+    public ImportEstimate admit(File file, ExcelType type, boolean spilled) {
+        ImportEstimate estimate = estimate(file, type, spilled);
+
+        // 直接拒绝的情况
+        if (estimate.getUncompressedBytes() > budget.getMaxUncompressedBytes()) {
+            throw new ExcelException("导入文件过大, 解压后大小为:" + estimate.getUncompressedBytes() + "字节");
+        }
+        if (estimate.compressionRatio() > budget.getMaxCompressionRatio()) {
+            throw new ExcelException("导入文件压缩比异常, 拒绝导入");
+        }
+        int permits = toPermits(estimate.getMemoryBytes());
+        if (permits > toPermits(budget.getMemoryBudgetBytes())) {
+            throw new ExcelException("导入文件过大, 预估内存超出限制");
+        }
+
+        // 预算够就直接读
+        if (memoryPermits.tryAcquire(permits)) {
+            return estimate;
+        }
+
+        // 不够就排队
+        if (queued.incrementAndGet() > budget.getMaxQueued()) {
+            queued.decrementAndGet();
+            throw new ExcelException("导入繁忙, 请稍后再试");
+        }
+        try {
+            logger.info("导入排队中, 预估:{}", estimate);
+            if (!memoryPermits.tryAcquire(permits, budget.getQueueTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                throw new ExcelException("导入繁忙, 请稍后再试");
+            }
+            return estimate;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExcelException("导入排队被中断");
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    /**
+     * 归还内存预算
+     * @param estimate {@link #admit(File, ExcelType)}的返回值
+     */
+    public void release(ImportEstimate estimate) {
+        memoryPermits.release(toPermits(estimate.getMemoryBytes()));
+    }
+
+    /**
+     * 最大数据行数, 由读取器按实际读到的行检查, 见{@link StreamReader#withMaxRows(long)}
+     * 估算的行数只用于预留内存, 不用于拒绝
+     */
+    public long maxRows() {
+        return budget.getMaxRows();
+    }
+
+    /**
+     * 当前排队数
+     */
+    public int queued() {
+        return queued.get();
+    }
+
+    /**
+     * 估算文件的大小, 行数, 内存
+     * @param file  上传的文件
+     * @param type  文件格式
+     * @return      预估信息
+     */
+    public ImportEstimate estimate(File file, ExcelType type) {
+        return estimate(file, type, false);
+    }
+
+    /**
+     * 估算文件的大小, 行数, 内存
+     * @param file      上传的文件
+     * @param type      文件格式
+     * @param spilled   是否读到落盘的行存储
+     * @return          预估信息
+     */
+    public ImportEstimate estimate(File file, ExcelType type, boolean spilled) {
+        ImportEstimate estimate = new ImportEstimate();
+        estimate.setType(type);
+        estimate.setCompressedBytes(file.length());
+
+        if (type == ExcelType.XLS) {
+            // OLE2不压缩, 共享字符串也在文件里, 行数不读记录无法得知, 按每行一个单元格估算, 不超过xls的最大行数, 只用于预留内存
+            long cells = file.length() / RECORD_BYTES_PER_CELL;
+            estimate.setUncompressedBytes(file.length());
+            estimate.setCells(cells);
+            estimate.setRows(Math.min(cells, SpreadsheetVersion.EXCEL97.getMaxRows()));
+            estimate.setMemoryBytes(file.length() * SHARED_STRINGS_FACTOR
+                    + (spilled ? cells * SPILLED_ROW_BYTES : cells * CELL_BYTES));
+            return estimate;
+        }
+
+        try (ZipFile zipFile = new ZipFile(file)) {
+            long uncompressed = 0;
+            ZipEntry firstSheet = null;
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.getSize() < 0) {
+                    throw new ExcelException("导入文件异常: 无法获得" + entry.getName() + "的大小");
+                }
+                uncompressed += entry.getSize();
+
+                String name = entry.getName();
+                if (name.endsWith("sharedStrings.xml")) {
+                    estimate.setSharedStringsBytes(entry.getSize());
+                } else if (name.startsWith("xl/worksheets/sheet") && name.endsWith(".xml")
+                        && (null == firstSheet || "xl/worksheets/sheet1.xml".equals(name))) {
+                    firstSheet = entry;
+                }
+            }
+            estimate.setUncompressedBytes(uncompressed);
+
+            if (null != firstSheet) {
+                estimateCells(zipFile, firstSheet, estimate);
+            }
+        } catch (IOException e) {
+            throw new ExcelException("导入文件异常:" + e.getMessage());
+        }
+
+        // 落盘时行数未知就按单元格数算, 偏大
+        long spilledRows = estimate.getRows() > 0 ? estimate.getRows() : estimate.getCells();
+        estimate.setMemoryBytes(spilled ? spilledRows * SPILLED_ROW_BYTES : estimate.getCells() * CELL_BYTES);
+        return estimate;
+    }
+
+    /**
+     * 从sheet开头的dimension估算行列数
+     * dimension可能不准(比如SXSSF写出的只有A1), 也可能被伪造, 单元格数取它与按xml大小估算的较大值,
+     * 行数取它与按单元格数和dimension的列数估算的较大值, 宁可偏大; 只用于预留内存, 实际行数由读取器检查
+     */
+    private void estimateCells(ZipFile zipFile, ZipEntry sheet, ImportEstimate estimate) throws IOException {
+        byte[] head = new byte[2048];
+        int length = 0;
+        try (InputStream inputStream = zipFile.getInputStream(sheet)) {
+            int read;
+            while (length < head.length && (read = inputStream.read(head, length, head.length - length)) > 0) {
+                length += read;
+            }
+        }
+
+        long cells = sheet.getSize() / XML_BYTES_PER_CELL;
+        long rows = 0;
+        long columns = 1;
+        Matcher matcher = DIMENSION.matcher(new String(head, 0, length, StandardCharsets.UTF_8));
+        if (matcher.find()) {
+            long firstRow = null == matcher.group(2) ? Long.parseLong(matcher.group(4)) : Long.parseLong(matcher.group(2));
+            int firstColumn = XSSFStreamReader.columnIndex(null == matcher.group(1) ? matcher.group(3) : matcher.group(1));
+            rows = Math.max(0, Long.parseLong(matcher.group(4)) - firstRow + 1);
+            columns = Math.max(1, XSSFStreamReader.columnIndex(matcher.group(3)) - firstColumn + 1);
+            cells = Math.max(cells, rows * columns);
+        }
+        estimate.setRows(Math.max(rows, cells / columns));
+        estimate.setCells(cells);
+    }
+
+    private static int toPermits(long bytes) {
+        return (int) Math.min(Integer.MAX_VALUE, (bytes + PERMIT_BYTES - 1) / PERMIT_BYTES);
+    }
+}
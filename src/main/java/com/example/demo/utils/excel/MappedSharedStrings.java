@@ -0,0 +1,248 @@
+package com.example.demo.utils.excel;
+
+import com.example.demo.utils.excel.goods.ExcelException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 落盘的共享字符串表, 替代ReadOnlySharedStringsTable
+ * 解析sharedStrings.xml时把每个字符串按UTF-8写到临时文件, 偏移写到另一个临时文件, 都内存映射
+ * 查找时按需解码, 最近用过的放在一个小的LRU缓存里
+ * 堆内存只有缓存大小, 不随文件中字符串的数量增长
+ */
+class MappedSharedStrings implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedSharedStrings.class);
+
+    // 单个映射的大小, MappedByteBuffer最大2G
+    private static final long SEGMENT_SIZE = 1L << 30;
+    // 缓存的字符串个数
+    private static final int CACHE_SIZE = 4096;
+
+    private final File dataFile;
+    private final File indexFile;
+    private int count;
+    private int maxLength;
+    // 字符串数据, 每段多映射maxLength字节, 从段内开始的字符串不会跨段
+    private MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    // 第i个字符串的起止偏移为index[i], index[i+1]
+    private MappedByteBuffer index;
+    private final Map<Integer, String> cache = new LinkedHashMap<Integer, String>(CACHE_SIZE * 4 / 3 + 1, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private MappedSharedStrings() throws IOException {
+        dataFile = File.createTempFile("excel-sst-", ".tmp");
+        indexFile = File.createTempFile("excel-sst-", ".idx");
+    }
+
+    /**
+     * 读取包中的共享字符串, 没有共享字符串时为空表
+     * @param opcPackage xlsx包
+     * @return 共享字符串表, 用完需要close
+     */
+    static MappedSharedStrings load(OPCPackage opcPackage) throws IOException {
+        MappedSharedStrings sharedStrings = new MappedSharedStrings();
+        try {
+            List<PackagePart> parts = opcPackage.getPartsByContentType(XSSFRelation.SHARED_STRINGS.getContentType());
+            if (parts.isEmpty()) {
+                sharedStrings.write(null);
+            } else {
+                try (InputStream inputStream = parts.get(0).getInputStream()) {
+                    sharedStrings.write(inputStream);
+                }
+            }
+            sharedStrings.map();
+            return sharedStrings;
+        } catch (IOException | RuntimeException e) {
+            sharedStrings.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return 字符串个数
+     */
+    int getCount() {
+        return count;
+    }
+
+    /**
+     * 按下标取字符串
+     * @param idx 共享字符串的下标, 即单元格中的值
+     */
+    String getEntryAt(int idx) {
+        String value = cache.get(idx);
+        if (null != value) {
+            return value;
+        }
+        if (idx < 0 || idx >= count) {
+            throw new ExcelException("共享字符串下标越界:" + idx);
+        }
+        long start = index.getLong(idx * 8);
+        int length = (int) (index.getLong((idx + 1) * 8) - start);
+        ByteBuffer buffer = segments[(int) (start / SEGMENT_SIZE)].duplicate();
+        buffer.position((int) (start % SEGMENT_SIZE));
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        value = new String(bytes, StandardCharsets.UTF_8);
+        cache.put(idx, value);
+        return value;
+    }
+
+    /**
+     * 不再持有映射并删除临时文件, 映射在GC回收时释放
+     */
+    @Override
+    public void close() {
+        segments = new MappedByteBuffer[0];
+        index = null;
+        cache.clear();
+        delete(dataFile);
+        delete(indexFile);
+    }
+
+    /**
+     * 解析sharedStrings.xml, 写出字符串和偏移
+     */
+    private void write(InputStream inputStream) throws IOException {
+        try (DataOutputStream data = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(dataFile), 64 * 1024));
+             DataOutputStream offsets = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile), 64 * 1024))) {
+            offsets.writeLong(0);
+            if (null == inputStream) {
+                return;
+            }
+            XMLReader xmlReader = SaxReaders.newReader();
+            xmlReader.setContentHandler(new StringsHandler(data, offsets));
+            xmlReader.parse(new InputSource(inputStream));
+        } catch (SAXException | ParserConfigurationException e) {
+            throw new IOException("解析共享字符串出错:" + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 映射写好的文件
+     */
+    private void map() throws IOException {
+        try (RandomAccessFile indexAccess = new RandomAccessFile(indexFile, "r");
+             FileChannel indexChannel = indexAccess.getChannel()) {
+            if (indexChannel.size() > Integer.MAX_VALUE) {
+                throw new ExcelException("共享字符串数量超出限制");
+            }
+            index = indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, indexChannel.size());
+        }
+        try (RandomAccessFile dataAccess = new RandomAccessFile(dataFile, "r");
+             FileChannel dataChannel = dataAccess.getChannel()) {
+            long size = dataChannel.size();
+            segments = new MappedByteBuffer[(int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = i * SEGMENT_SIZE;
+                segments[i] = dataChannel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE + maxLength, size - start));
+            }
+        }
+    }
+
+    private static void delete(File file) {
+        if (file.exists() && !file.delete()) {
+            // 有的系统映射未回收时不能删除
+            file.deleteOnExit();
+            logger.warn("删除共享字符串临时文件失败, 退出时删除, 文件:{}", file.getPath());
+        }
+    }
+
+    /**
+     * 解析si, 拼接其中的t, 忽略拼音rPh中的t
+     */
+    private class StringsHandler extends DefaultHandler {
+
+        private final DataOutputStream data;
+        private final DataOutputStream offsets;
+        private final StringBuilder text = new StringBuilder();
+        private long position;
+        private boolean inText;
+        private boolean inPhonetic;
+
+        StringsHandler(DataOutputStream data, DataOutputStream offsets) {
+            this.data = data;
+            this.offsets = offsets;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "si":
+                    text.setLength(0);
+                    break;
+                case "rPh":
+                    inPhonetic = true;
+                    break;
+                case "t":
+                    inText = !inPhonetic;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inText) {
+                text.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            switch (localName) {
+                case "t":
+                    inText = false;
+                    break;
+                case "rPh":
+                    inPhonetic = false;
+                    break;
+                case "si":
+                    try {
+                        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+                        data.write(bytes);
+                        position += bytes.length;
+                        offsets.writeLong(position);
+                        maxLength = Math.max(maxLength, bytes.length);
+                        count++;
+                    } catch (IOException e) {
+                        throw new SAXException(e);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.demo.utils.excel;
+
+import com.example.demo.utils.excel.goods.ExcelException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 把多张报表打成一个zip流式输出
+ * 各报表在线程池中并行构建成临时文件, 哪张先完成就先写进zip, 慢的不挡住已经完成的
+ * 同时在构建或等待写出的报表不超过并行数, 临时文件的数量和磁盘占用都有上限
+ * xlsx本身已经压缩过, 在zip中只存储不再压缩
+ */
+class ReportBundle {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReportBundle.class);
+
+    private ReportBundle() {
+    }
+
+    /**
+     * 构建好的一张报表
+     */
+    static class Part {
+        private final String name;
+        private final File file;
+        private final long crc;
+
+        private Part(String name, File file, long crc) {
+            this.name = name;
+            this.file = file;
+            this.crc = crc;
+        }
+    }
+
+    /**
+     * 把构建好的临时文件包装成报表, 同时计算存储需要的CRC
+     * 在构建线程中调用, 文件刚写完还在页缓存里
+     * @param name  包中的文件名
+     * @param file  构建好的临时文件, 写进zip后删除
+     */
+    static Part part(String name, File file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream inputStream = new FileInputStream(file)) {
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            delete(file);
+            throw e;
+        }
+        return new Part(name, file, crc.getValue());
+    }
+
+    /**
+     * 构建并输出所有报表, 不关闭输出流
+     * 任何一张失败时放弃其余的, 删除所有临时文件, 不写zip的目录, 客户端收到的是不完整的包而不是缺了报表的包
+     * @param executor      构建报表的线程池
+     * @param parallelism   同时在构建或等待写出的报表数
+     * @param builders      每张报表的构建过程
+     * @param outputStream  输出流
+     */
+    static void write(ExecutorService executor, int parallelism, List<Callable<Part>> builders,
+                      OutputStream outputStream) throws IOException {
+        CompletionService<Part> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<Part>> pending = new ArrayList<>();
+        AtomicBoolean aborted = new AtomicBoolean();
+        ZipOutputStream zipStream = new ZipOutputStream(outputStream);
+        int next = 0;
+        try {
+            while (next < builders.size() || !pending.isEmpty()) {
+                while (pending.size() < parallelism && next < builders.size()) {
+                    pending.add(completionService.submit(abortable(builders.get(next++), aborted)));
+                }
+                Future<Part> done = completionService.take();
+                pending.remove(done);
+                writePart(zipStream, done.get());
+            }
+            zipStream.finish();
+            zipStream.flush();
+        } catch (InterruptedException e) {
+            discard(pending, aborted);
+            Thread.currentThread().interrupt();
+            throw new ExcelException("打包导出被中断");
+        } catch (ExecutionException e) {
+            discard(pending, aborted);
+            Throwable cause = e.getCause();
+            if (cause instanceof ExcelException) {
+                throw (ExcelException) cause;
+            }
+            throw new ExcelException("打包导出异常:" + cause.getMessage());
+        } catch (IOException | RuntimeException e) {
+            discard(pending, aborted);
+            throw e;
+        }
+    }
+
+    /**
+     * 写一张报表并删除临时文件, 写完立即flush, 客户端随之收到
+     */
+    private static void writePart(ZipOutputStream zipStream, Part part) throws IOException {
+        try (InputStream inputStream = new FileInputStream(part.file)) {
+            ZipEntry entry = new ZipEntry(part.name);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(part.file.length());
+            entry.setCompressedSize(part.file.length());
+            entry.setCrc(part.crc);
+            zipStream.putNextEntry(entry);
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                zipStream.write(buffer, 0, read);
+            }
+            zipStream.closeEntry();
+            zipStream.flush();
+        } finally {
+            delete(part.file);
+        }
+    }
+
+    /**
+     * 放弃打包后, 还没开始的报表不再构建, 正在构建的自己删除临时文件
+     * 不用Future.cancel: 正在运行的任务也能被取消, 它之后构建出的文件就没人删除了
+     */
+    private static Callable<Part> abortable(Callable<Part> builder, AtomicBoolean aborted) {
+        return () -> {
+            if (aborted.get()) {
+                return null;
+            }
+            Part part = builder.call();
+            if (aborted.get()) {
+                delete(part.file);
+                return null;
+            }
+            return part;
+        };
+    }
+
+    /**
+     * 放弃打包, 等所有已提交的报表结束, 删除已经构建好的临时文件
+     */
+    private static void discard(List<Future<Part>> pending, AtomicBoolean aborted) {
+        aborted.set(true);
+        boolean interrupted = false;
+        for (Future<Part> future : pending) {
+            while (true) {
+                try {
+                    Part part = future.get();
+                    if (null != part) {
+                        delete(part.file);
+                    }
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    // 构建失败的没有留下临时文件
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void delete(File file) {
+        if (!file.delete()) {
+            logger.warn("删除导出临时文件失败, 文件:{}", file.getPath());
+        }
+    }
+}
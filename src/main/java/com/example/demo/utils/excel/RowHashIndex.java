@@ -0,0 +1,165 @@
+package com.example.demo.utils.excel;
+
+import com.example.demo.utils.excel.goods.ExcelException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 行主键 -> 行哈希的索引, 记录上一次增量导入的内容
+ * 文件格式: gzip(魔数, 版本, 行数, [主键长度, 主键UTF-8, 哈希]...)
+ */
+public class RowHashIndex {
+
+    private static final int MAGIC = 0x52484958;
+    private static final int VERSION = 1;
+
+    // FNV-1a 64位
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Map<String, Long> hashes;
+
+    public RowHashIndex() {
+        this(new HashMap<>());
+    }
+
+    private RowHashIndex(Map<String, Long> hashes) {
+        this.hashes = hashes;
+    }
+
+    /**
+     * 从文件加载索引, 文件不存在时为空索引, 即所有行都是新增
+     * @param file 索引文件
+     */
+    public static RowHashIndex load(File file) {
+        if (!file.exists()) {
+            return new RowHashIndex();
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(file))))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new ExcelException("增量导入的索引文件格式不正确, 文件:" + file.getPath());
+            }
+            int size = input.readInt();
+            Map<String, Long> hashes = new HashMap<>(size * 4 / 3 + 1);
+            for (int i = 0; i < size; i++) {
+                byte[] key = new byte[input.readInt()];
+                input.readFully(key);
+                hashes.put(new String(key, StandardCharsets.UTF_8), input.readLong());
+            }
+            return new RowHashIndex(hashes);
+        } catch (IOException e) {
+            throw new ExcelException("读取增量导入的索引文件异常:" + e.getMessage());
+        }
+    }
+
+    /**
+     * 保存到文件, 先写临时文件再替换, 写到一半出错不会破坏旧索引
+     * @param file 索引文件
+     */
+    public void save(File file) {
+        File parent = file.getAbsoluteFile().getParentFile();
+        try {
+            Files.createDirectories(parent.toPath());
+            File tempFile = File.createTempFile(file.getName(), ".tmp", parent);
+            try {
+                try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                        new GZIPOutputStream(new FileOutputStream(tempFile))))) {
+                    output.writeInt(MAGIC);
+                    output.writeInt(VERSION);
+                    output.writeInt(hashes.size());
+                    for (Map.Entry<String, Long> entry : hashes.entrySet()) {
+                        byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                        output.writeInt(key.length);
+                        output.write(key);
+                        output.writeLong(entry.getValue());
+                    }
+                }
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tempFile.toPath());
+            }
+        } catch (IOException e) {
+            throw new ExcelException("保存增量导入的索引文件异常:" + e.getMessage());
+        }
+    }
+
+    /**
+     * @return 主键对应的哈希, 没有时为null
+     */
+    public Long get(String key) {
+        return hashes.get(key);
+    }
+
+    /**
+     * @return 主键之前的哈希, 没有时为null
+     */
+    public Long put(String key, long hash) {
+        return hashes.put(key, hash);
+    }
+
+    public Set<String> keys() {
+        return hashes.keySet();
+    }
+
+    public int size() {
+        return hashes.size();
+    }
+
+    /**
+     * 一行中映射列的哈希, 与单元格类型有关, 同样的内容每次得到同样的哈希
+     * @param values        一行的值, 见{@link com.example.demo.utils.excel.goods.RowHandler}
+     * @param columnCount   映射的列数, 之后的列不参与
+     */
+    public static long hash(List<Object> values, int columnCount) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < columnCount; i++) {
+            Object value = ExcelMappers.valueAt(values, i);
+            if (null == value) {
+                hash = hash(hash, 0);
+            } else if (value instanceof Double) {
+                hash = hash(hash, 1);
+                hash = hash(hash, Double.doubleToLongBits((Double) value));
+            } else if (value instanceof Date) {
+                hash = hash(hash, 2);
+                hash = hash(hash, ((Date) value).getTime());
+            } else if (value instanceof Boolean) {
+                hash = hash(hash, (Boolean) value ? 3 : 4);
+            } else {
+                hash = hash(hash, 5);
+                String text = value.toString();
+                for (int j = 0; j < text.length(); j++) {
+                    hash = hash(hash, text.charAt(j));
+                }
+            }
+            // 列分隔, 避免 "ab","c" 与 "a","bc" 相同
+            hash = hash(hash, 0xFF);
+        }
+        return hash;
+    }
+
+    private static long hash(long hash, long value) {
+        for (int i = 0; i < 8; i++) {
+            hash ^= (value >>> (i * 8)) & 0xFF;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+}
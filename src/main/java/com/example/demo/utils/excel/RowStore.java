@@ -0,0 +1,238 @@
+package com.example.demo.utils.excel;
+
+import com.example.demo.utils.excel.goods.ExcelException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 落盘的行存储, 只追加
+ * 每行按紧凑的二进制格式写到临时文件, 堆上只保留每行的偏移
+ * 写完后内存映射, 按下标随机读取时才解码
+ * 值的类型见{@link com.example.demo.utils.excel.goods.RowHandler}
+ */
+public class RowStore implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(RowStore.class);
+
+    // 单个映射的大小, MappedByteBuffer最大2G
+    private static final long SEGMENT_SIZE = 1L << 30;
+
+    private static final byte NULL = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte DATE = 4;
+    private static final byte STRING = 5;
+
+    private final File file;
+    // 写入阶段
+    private DataOutputStream output;
+    private final ByteArrayOutputStream rowBuffer = new ByteArrayOutputStream();
+    private final DataOutputStream rowOutput = new DataOutputStream(rowBuffer);
+    private long position;
+    private int maxRowLength;
+    // 每行在文件中的偏移
+    private long[] offsets = new long[1024];
+    private int size;
+    // 读取阶段, 每段多映射maxRowLength字节, 从段内开始的行不会跨段; close()时置空, 读取时只读一次
+    private volatile MappedByteBuffer[] segments;
+
+    public RowStore() {
+        try {
+            file = File.createTempFile("excel-rows-", ".tmp");
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+        } catch (IOException e) {
+            throw new ExcelException("创建行存储异常:" + e.getMessage());
+        }
+    }
+
+    /**
+     * 追加一行
+     * @param values 一行的值
+     */
+    public void append(List<Object> values) {
+        if (null == output) {
+            throw new ExcelException("行存储已经完成写入");
+        }
+        try {
+            rowBuffer.reset();
+            writeVarInt(rowOutput, values.size());
+            for (Object value : values) {
+                writeValue(value);
+            }
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            offsets[size++] = position;
+            rowBuffer.writeTo(output);
+            position += rowBuffer.size();
+            maxRowLength = Math.max(maxRowLength, rowBuffer.size());
+        } catch (IOException e) {
+            throw new ExcelException("写入行存储异常:" + e.getMessage());
+        }
+    }
+
+    /**
+     * 结束写入, 映射文件, 之后才能读取
+     */
+    public void finish() {
+        if (null == output) {
+            return;
+        }
+        try {
+            output.close();
+            output = null;
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+                 FileChannel channel = randomAccessFile.getChannel()) {
+                int count = (int) ((position + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+                MappedByteBuffer[] mapped = new MappedByteBuffer[count];
+                for (int i = 0; i < count; i++) {
+                    long start = i * SEGMENT_SIZE;
+                    long length = Math.min(SEGMENT_SIZE + maxRowLength, position - start);
+                    mapped[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                }
+                // 偏移先截断再发布映射, 读到映射的线程也能读到截断后的偏移
+                offsets = Arrays.copyOf(offsets, size);
+                segments = mapped;
+            }
+        } catch (IOException e) {
+            throw new ExcelException("映射行存储异常:" + e.getMessage());
+        }
+    }
+
+    /**
+     * @return 行数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 读取一行, 可以多线程同时读
+     * @param index 行下标
+     * @return 一行的值
+     */
+    public List<Object> get(int index) {
+        MappedByteBuffer[] current = segments;
+        long[] currentOffsets = offsets;
+        if (null == current) {
+            throw new ExcelException("行存储还没有完成写入或已经关闭");
+        }
+        if (index < 0 || index >= currentOffsets.length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + currentOffsets.length);
+        }
+        long offset = currentOffsets[index];
+        ByteBuffer buffer = current[(int) (offset / SEGMENT_SIZE)].duplicate();
+        buffer.position((int) (offset % SEGMENT_SIZE));
+
+        int count = readVarInt(buffer);
+        List<Object> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(readValue(buffer));
+        }
+        return values;
+    }
+
+    /**
+     * 删除临时文件, 不再持有映射
+     * 映射没有显式解除, 并发读取中的线程解除后再访问会让JVM崩溃; 映射在缓冲区被GC回收时释放,
+     * Linux上文件可以在映射期间删除, 删除失败(比如Windows)时退出时再删
+     */
+    @Override
+    public void close() {
+        try {
+            if (null != output) {
+                output.close();
+                output = null;
+            }
+        } catch (IOException e) {
+            logger.warn("关闭行存储出错.{}", e.getMessage());
+        }
+        // 偏移不清空, 与close()并发的get()读到旧的映射时偏移仍然有效
+        segments = null;
+        size = 0;
+        if (!file.delete()) {
+            // 有的系统映射未回收时不能删除
+            file.deleteOnExit();
+            logger.warn("删除行存储临时文件失败, 退出时删除, 文件:{}", file.getPath());
+        }
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (null == value) {
+            rowOutput.writeByte(NULL);
+        } else if (value instanceof Boolean) {
+            rowOutput.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Double) {
+            rowOutput.writeByte(DOUBLE);
+            rowOutput.writeDouble((Double) value);
+        } else if (value instanceof Date) {
+            rowOutput.writeByte(DATE);
+            rowOutput.writeLong(((Date) value).getTime());
+        } else {
+            byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+            rowOutput.writeByte(STRING);
+            writeVarInt(rowOutput, bytes.length);
+            rowOutput.write(bytes);
+        }
+    }
+
+    private static Object readValue(ByteBuffer buffer) {
+        byte tag = buffer.get();
+        switch (tag) {
+            case NULL:
+                return null;
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case DOUBLE:
+                return buffer.getDouble();
+            case DATE:
+                return new Date(buffer.getLong());
+            case STRING:
+                byte[] bytes = new byte[readVarInt(buffer)];
+                buffer.get(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            default:
+                throw new ExcelException("行存储数据损坏, 未知的类型:" + tag);
+        }
+    }
+
+    private static void writeVarInt(DataOutputStream output, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    private static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
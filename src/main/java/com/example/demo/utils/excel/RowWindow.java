@@ -0,0 +1,95 @@
+package com.example.demo.utils.excel;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+
+/**
+ * 按字节预算调整SXSSF驻留在内存中的行数
+ * 固定100行对5列的表太少, 频繁刷到临时文件; 对几百列的表又可能太多
+ * 这里抽样估算已填充的行在堆中的大小, 用预算除以平均行大小得到驻留行数, 变化较大时才调整
+ * 估算只看单元格数和字符串长度, 不精确, 但与实际占用成比例
+ */
+class RowWindow {
+
+    // 没有预算时的驻留行数, 与之前固定的100行相同
+    static final int DEFAULT_SIZE = 100;
+    // 驻留行数的上下限
+    private static final int MIN_SIZE = 10;
+    private static final int MAX_SIZE = 100000;
+    // 开头每行都抽样, 之后每隔若干行抽样一次
+    private static final int WARM_UP_ROWS = 32;
+    private static final int SAMPLE_INTERVAL = 64;
+    // 一行和一个单元格的固定开销: 对象头, 引用, 值对象; 字符串另算
+    private static final long ROW_BYTES = 96;
+    private static final long CELL_BYTES = 64;
+    private static final long STRING_BYTES = 40;
+
+    private final SXSSFSheet sheet;
+    private final long budgetBytes;
+    private final RowWindowMetrics metrics;
+    private int size = DEFAULT_SIZE;
+    private long rows;
+    private long sampledRows;
+    private long sampledBytes;
+
+    /**
+     * @param sheet         流式工作表, 创建时的驻留行数应为{@link #DEFAULT_SIZE}
+     * @param budgetBytes   驻留行的目标字节数, 0表示不调整
+     * @param metrics       记录调整结果的指标
+     */
+    RowWindow(SXSSFSheet sheet, long budgetBytes, RowWindowMetrics metrics) {
+        this.sheet = sheet;
+        this.budgetBytes = budgetBytes;
+        this.metrics = metrics;
+    }
+
+    /**
+     * 观察一行, 要在行填充完之后调用
+     * @param row 填充好的行
+     */
+    void observe(Row row) {
+        if (budgetBytes <= 0) {
+            return;
+        }
+        rows++;
+        if (rows > WARM_UP_ROWS && rows % SAMPLE_INTERVAL != 0) {
+            return;
+        }
+        sampledRows++;
+        sampledBytes += rowBytes(row);
+        if (rows < WARM_UP_ROWS) {
+            return;
+        }
+
+        long averageBytes = Math.max(1, sampledBytes / sampledRows);
+        int target = (int) Math.max(MIN_SIZE, Math.min(MAX_SIZE, budgetBytes / averageBytes));
+        // 预热结束时定下第一个值, 之后变化超过1/8才调整, 避免来回抖动
+        if (rows == WARM_UP_ROWS || Math.abs(target - size) > size / 8) {
+            boolean changed = target != size;
+            if (changed) {
+                size = target;
+                sheet.setRandomAccessWindowSize(size);
+            }
+            metrics.record(size, averageBytes, changed);
+        }
+    }
+
+    /**
+     * 当前的驻留行数
+     */
+    int size() {
+        return size;
+    }
+
+    private static long rowBytes(Row row) {
+        long bytes = ROW_BYTES;
+        for (Cell cell : row) {
+            bytes += CELL_BYTES;
+            if (cell.getCellType() == Cell.CELL_TYPE_STRING) {
+                bytes += STRING_BYTES + 2L * cell.getStringCellValue().length();
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.demo.utils.excel;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 导出时内存中驻留行数的指标
+ * 按预算调整驻留行数时, 记录最近一次选定的行数和据以换算的平均行大小
+ * 同一个ExcelConvertor的所有导出共用一份, 并发导出时反映的是最后记录的那一个导出, 不是某个导出的完整过程
+ */
+public class RowWindowMetrics {
+
+    // 最近一次选定的驻留行数
+    private final AtomicInteger lastWindow = new AtomicInteger(RowWindow.DEFAULT_SIZE);
+    // 最近一次实测的平均行大小, 字节
+    private final AtomicLong lastRowBytes = new AtomicLong();
+    // 累计调整次数
+    private final AtomicLong adjustments = new AtomicLong();
+
+    /**
+     * 最近一次选定的驻留行数
+     */
+    public int lastWindow() {
+        return lastWindow.get();
+    }
+
+    /**
+     * 最近一次实测的平均行大小, 字节, 还没有按预算调整过时为0
+     */
+    public long lastRowBytes() {
+        return lastRowBytes.get();
+    }
+
+    /**
+     * 累计调整驻留行数的次数, 只计驻留行数真正改变的次数
+     */
+    public long adjustments() {
+        return adjustments.get();
+    }
+
+    /**
+     * 记录选定的驻留行数
+     * @param window    选定的驻留行数
+     * @param rowBytes  据以换算的平均行大小
+     * @param changed   驻留行数是否因此改变
+     */
+    void record(int window, long rowBytes, boolean changed) {
+        lastWindow.set(window);
+        lastRowBytes.set(rowBytes);
+        if (changed) {
+            adjustments.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.demo.utils.excel;
+
+import com.example.demo.utils.excel.goods.ExcelException;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+/**
+ * 解析上传文件中xml的SAX读取器
+ * 上传的文件不可信, 禁止DOCTYPE和外部实体, 防止XXE读取服务器上的文件或发起请求
+ * 文件中的xml都来自xlsx包, 合法的文件不会有DOCTYPE
+ */
+final class SaxReaders {
+
+    private SaxReaders() {
+    }
+
+    /**
+     * 创建加固过的读取器, 每次解析用一个新的
+     * SAXParserFactory不保证线程安全, 所以不缓存工厂
+     */
+    static XMLReader newReader() throws SAXException, ParserConfigurationException {
+        SAXParserFactory parserFactory = SAXParserFactory.newInstance();
+        parserFactory.setNamespaceAware(true);
+        parserFactory.setXIncludeAware(false);
+        try {
+            parserFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            parserFactory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            parserFactory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+            parserFactory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+            parserFactory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+        } catch (ParserConfigurationException | SAXException e) {
+            // 不支持这些特性的解析器无法保证安全, 不能用来解析上传的文件
+            throw new ExcelException("xml解析器不支持禁止外部实体:" + e.getMessage());
+        }
+        return parserFactory.newSAXParser().getXMLReader();
+    }
+}
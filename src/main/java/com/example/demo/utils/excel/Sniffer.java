@@ -12,7 +12,13 @@ import org.slf4j.LoggerFactory;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 嗅探器
@@ -23,6 +29,12 @@ public class Sniffer {
 
     private Logger logger = LoggerFactory.getLogger(Sniffer.class);
 
+    // 不指定文件名时的缓存key
+    private static final String ANY_FILE = "\u0000";
+
+    // 解析好的列信息, 实体 -> 文件名 -> 列信息, 所有嗅探器共享
+    private static final Map<Class<?>, Map<String, List<FieldColumn>>> FIELD_COLUMNS = new ConcurrentHashMap<>();
+
     /**
      * 找到将要导出的@Excel注解
      * @param <T>           实体泛型
@@ -64,11 +76,62 @@ public class Sniffer {
 
     /**
      * 找到类中需要导出的字段信息
+     * 解析结果会被缓存, 同一个实体和文件名只反射一次
      * @param <T>           实体泛型
      * @param modelClass    实体类信息
      * @return              导出的列 列表
      */
     public <T> List<FieldColumn> findFieldColumns(Class<T> modelClass, String fileName) {
+        return FIELD_COLUMNS.computeIfAbsent(modelClass, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(null == fileName ? ANY_FILE : fileName,
+                        key -> Collections.unmodifiableList(resolveFieldColumns(modelClass, fileName)));
+    }
+
+    /**
+     * 预热并校验实体
+     * 检查每个@Column.belong都能对应到@Excel.value, 每个列都有getter和setter,
+     * 并解析好每个@Excel.value的列信息放到缓存里
+     * 配置有问题时抛出ExcelException
+     * @param modelClass    实体类信息
+     * @param <T>           实体泛型
+     */
+    public <T> void warmUp(Class<T> modelClass) {
+        Excel excelAnnotation = modelClass.getDeclaredAnnotation(Excel.class);
+        if (null == excelAnnotation) {
+            throw new ExcelException("未知的导出实体,请先用@Excel注册, 类型:" + modelClass.getName());
+        }
+
+        Set<String> fileNames = new HashSet<>(Arrays.asList(excelAnnotation.value()));
+        for (Field field : modelClass.getDeclaredFields()) {
+            for (Column column : field.getDeclaredAnnotationsByType(Column.class)) {
+                for (String belongFile : column.belong()) {
+                    if (!"".equals(belongFile) && !fileNames.contains(belongFile)) {
+                        throw new ExcelException("@Column.belong未找到相匹配的@Excel, 类型:" + modelClass.getName()
+                                + ", 字段:" + field.getName() + ", belong:" + belongFile);
+                    }
+                }
+                if (null == createFieldColumn(modelClass, field, column)) {
+                    throw new ExcelException("未找到字段合法的getter或setter方法, 类型:" + modelClass.getName()
+                            + ", 字段:" + field.getName());
+                }
+            }
+        }
+
+        for (String fileName : excelAnnotation.value()) {
+            findFieldColumns(modelClass, fileName);
+        }
+        if (excelAnnotation.value().length == 1) {
+            findFieldColumns(modelClass, null);
+        }
+    }
+
+    /**
+     * 反射解析类中需要导出的字段信息
+     * @param <T>           实体泛型
+     * @param modelClass    实体类信息
+     * @return              导出的列 列表
+     */
+    private <T> List<FieldColumn> resolveFieldColumns(Class<T> modelClass, String fileName) {
         List<FieldColumn> fieldColumnList = new ArrayList<>();
 
         Field[] fields = modelClass.getDeclaredFields();
@@ -215,7 +278,10 @@ public class Sniffer {
                     getterMethod,
                     setterMethod,
                     "".equals(column.value()) ? field.getName() : column.value(),
-                    column.index()
+                    column.index(),
+                    column.format(),
+                    column.align(),
+                    column.key()
             );
         } catch (NoSuchMethodException e) {
             logger.warn("未找到字段 {} 合法的getter方法, 类型:{}", field.getName(), modelClass.toString());
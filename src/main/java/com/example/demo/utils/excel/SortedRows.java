@@ -0,0 +1,153 @@
+package com.example.demo.utils.excel;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * 外部排序后的行, 按顺序迭代一次
+ * 输入按段读入内存排序, 每段写成一个{@link RowStore}, 最后多路归并
+ * 只有一段时不落盘, 直接在内存中排序
+ * 相等的行保持输入的顺序; 用完需要close, 删除临时文件
+ */
+class SortedRows implements Iterator<List<Object>>, Closeable {
+
+    private final List<RowStore> runs;
+    // 只有一段时的内存结果
+    private final Iterator<List<Object>> memoryRows;
+    // 多段归并时, 每段的当前行
+    private final PriorityQueue<Cursor> cursors;
+
+    private SortedRows(List<RowStore> runs, Iterator<List<Object>> memoryRows, PriorityQueue<Cursor> cursors) {
+        this.runs = runs;
+        this.memoryRows = memoryRows;
+        this.cursors = cursors;
+    }
+
+    /**
+     * 排序
+     * @param rows          输入的行, 读完为止
+     * @param comparator    行的顺序
+     * @param runRows       内存中一段的行数
+     * @return 排好序的行
+     */
+    static SortedRows sort(Iterator<List<Object>> rows, Comparator<List<Object>> comparator, int runRows) {
+        List<RowStore> runs = new ArrayList<>();
+        try {
+            List<List<Object>> buffer = new ArrayList<>();
+            while (rows.hasNext()) {
+                buffer.add(rows.next());
+                if (buffer.size() >= runRows) {
+                    runs.add(spill(buffer, comparator));
+                    buffer = new ArrayList<>();
+                }
+            }
+            if (runs.isEmpty()) {
+                buffer.sort(comparator);
+                return new SortedRows(runs, buffer.iterator(), null);
+            }
+            if (!buffer.isEmpty()) {
+                runs.add(spill(buffer, comparator));
+            }
+
+            // 相等时先出前面的段, 保持稳定
+            PriorityQueue<Cursor> cursors = new PriorityQueue<>(runs.size(), (left, right) -> {
+                int result = comparator.compare(left.current, right.current);
+                return result != 0 ? result : Integer.compare(left.runIndex, right.runIndex);
+            });
+            for (int i = 0; i < runs.size(); i++) {
+                Cursor cursor = new Cursor(runs.get(i), i);
+                cursor.advance();
+                cursors.add(cursor);
+            }
+            return new SortedRows(runs, null, cursors);
+        } catch (RuntimeException e) {
+            for (RowStore run : runs) {
+                run.close();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return null != memoryRows ? memoryRows.hasNext() : !cursors.isEmpty();
+    }
+
+    @Override
+    public List<Object> next() {
+        if (null != memoryRows) {
+            return memoryRows.next();
+        }
+        Cursor cursor = cursors.poll();
+        if (null == cursor) {
+            throw new NoSuchElementException();
+        }
+        List<Object> row = cursor.current;
+        if (cursor.advance()) {
+            cursors.add(cursor);
+        }
+        return row;
+    }
+
+    /**
+     * 删除所有段的临时文件
+     */
+    @Override
+    public void close() {
+        for (RowStore run : runs) {
+            run.close();
+        }
+        runs.clear();
+    }
+
+    /**
+     * 排好一段, 写到行存储
+     */
+    private static RowStore spill(List<List<Object>> buffer, Comparator<List<Object>> comparator) {
+        buffer.sort(comparator);
+        RowStore run = new RowStore();
+        try {
+            for (List<Object> row : buffer) {
+                run.append(row);
+            }
+            run.finish();
+            return run;
+        } catch (RuntimeException e) {
+            run.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 一段中的读取位置
+     */
+    private static class Cursor {
+        private final RowStore run;
+        private final int runIndex;
+        private int next;
+        private List<Object> current;
+
+        private Cursor(RowStore run, int runIndex) {
+            this.run = run;
+            this.runIndex = runIndex;
+        }
+
+        /**
+         * 移到下一行
+         * @return 是否还有行
+         */
+        private boolean advance() {
+            if (next >= run.size()) {
+                current = null;
+                return false;
+            }
+            current = run.get(next++);
+            return true;
+        }
+    }
+}
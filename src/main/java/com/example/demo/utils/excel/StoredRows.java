@@ -0,0 +1,41 @@
+package com.example.demo.utils.excel;
+
+import java.io.Closeable;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Function;
+
+/**
+ * 落盘的导入结果, 只读的List
+ * 每次get都从{@link RowStore}解码并封装一个新的实体, 不缓存, 用完需要close
+ * @param <T> 实体泛型
+ */
+public class StoredRows<T> extends AbstractList<T> implements RandomAccess, Closeable {
+
+    private final RowStore rowStore;
+    private final Function<List<Object>, T> rowReader;
+
+    StoredRows(RowStore rowStore, Function<List<Object>, T> rowReader) {
+        this.rowStore = rowStore;
+        this.rowReader = rowReader;
+    }
+
+    @Override
+    public T get(int index) {
+        return rowReader.apply(rowStore.get(index));
+    }
+
+    @Override
+    public int size() {
+        return rowStore.size();
+    }
+
+    /**
+     * 删除临时文件, 之后不能再读取, 映射在GC回收时释放
+     */
+    @Override
+    public void close() {
+        rowStore.close();
+    }
+}
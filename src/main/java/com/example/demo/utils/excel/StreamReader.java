@@ -0,0 +1,63 @@
+package com.example.demo.utils.excel;
+
+import com.example.demo.utils.excel.goods.ExcelException;
+import com.example.demo.utils.excel.goods.ImportProgress;
+import com.example.demo.utils.excel.goods.RowHandler;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 流式读取器
+ * 按行把第一页的内容推给RowHandler, 不在内存中构建整个工作簿
+ */
+public interface StreamReader {
+
+    /**
+     * 读取文件的第一页
+     * @param file      Excel文件
+     * @param handler   行回调
+     * @throws IOException 文件读取出错
+     */
+    default void read(File file, RowHandler handler) throws IOException {
+        read(file, handler, null);
+    }
+
+    /**
+     * 读取文件的第一页, 报告进度
+     * @param file      Excel文件
+     * @param handler   行回调
+     * @param progress  进度, 每读若干行更新并检查取消, null表示不报告
+     * @throws IOException 文件读取出错
+     */
+    void read(File file, RowHandler handler, ImportProgress progress) throws IOException;
+
+    /**
+     * 绑定了进度的读取器, 用于把进度带到只接受StreamReader的转化过程中
+     * @param progress  进度, null时返回自身
+     */
+    default StreamReader withProgress(ImportProgress progress) {
+        if (null == progress) {
+            return this;
+        }
+        return (file, handler, ignored) -> read(file, handler, progress);
+    }
+
+    /**
+     * 限制了行数的读取器, 在读取器的逐行回调中按实际读到的行计数, 第一行为表头不计
+     * 超出时以{@link ExcelException}结束导入, 不再解析剩下的内容
+     * 准入时的行数只是按文件大小的估算, 不用于拒绝
+     * @param maxRows   最大数据行数
+     */
+    default StreamReader withMaxRows(long maxRows) {
+        return (file, handler, progress) -> {
+            long[] rows = {0};
+            read(file, (rowIndex, values) -> {
+                if (++rows[0] > maxRows + 1) {
+                    throw new ExcelException("导入数据数量超出最大限制,最大限制为:" + maxRows + "条");
+                }
+                handler.onRow(rowIndex, values);
+            }, progress);
+        };
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.demo.utils.excel;
+
+import com.example.demo.utils.excel.goods.FieldColumn;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.HorizontalAlignment;
+import org.apache.poi.ss.usermodel.Workbook;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 工作簿的样式池
+ * 相同的格式和对齐只创建一个CellStyle, 在解析列信息时按列分配好, 填充单元格时不再创建样式
+ * 工作簿的样式数量有上限, 每个单元格创建一个样式很快就会用完, styles.xml也会膨胀
+ */
+public class StylePool {
+
+    // 内置的日期格式 m/d/yy h:mm
+    private static final short DATE_FORMAT = 0x16;
+
+    private final Workbook workbook;
+    // 格式+对齐 -> 样式
+    private final Map<String, CellStyle> styles = new HashMap<>();
+
+    public StylePool(Workbook workbook) {
+        this.workbook = workbook;
+    }
+
+    /**
+     * 按列信息分配每一列的样式
+     * @param fieldColumnList   列信息
+     * @return                  每列的样式, 不需要样式的列为null
+     */
+    public CellStyle[] columnStyles(List<FieldColumn> fieldColumnList) {
+        CellStyle[] columnStyles = new CellStyle[fieldColumnList.size()];
+        for (int i = 0; i < fieldColumnList.size(); i++) {
+            FieldColumn fieldColumn = fieldColumnList.get(i);
+            columnStyles[i] = columnStyle(fieldColumn.getGetter().getReturnType() == Date.class,
+                    fieldColumn.getFormat(), fieldColumn.getAlign());
+        }
+        return columnStyles;
+    }
+
+    /**
+     * 一列的样式
+     * @param date      是否为日期列, 日期列没有格式时使用 m/d/yy h:mm
+     * @param format    单元格格式, 空表示不设置
+     * @param align     水平对齐
+     * @return          样式, 不需要样式时为null
+     */
+    public CellStyle columnStyle(boolean date, String format, HorizontalAlignment align) {
+        if (!date && "".equals(format) && align == HorizontalAlignment.GENERAL) {
+            return null;
+        }
+        return styles.computeIfAbsent((date ? "D" : "N") + format + '\u0000' + align, key -> {
+            CellStyle style = workbook.createCellStyle();
+            if (!"".equals(format)) {
+                style.setDataFormat(workbook.createDataFormat().getFormat(format));
+            } else if (date) {
+                style.setDataFormat(DATE_FORMAT);
+            }
+            style.setAlignment((short) align.ordinal());
+            return style;
+        });
+    }
+
+    /**
+     * 默认的日期样式
+     */
+    public CellStyle dateStyle() {
+        return columnStyle(true, "", HorizontalAlignment.GENERAL);
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.demo.utils.excel;
+
+import com.example.demo.utils.excel.goods.Compression;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * 按指定压缩方式输出SXSSF工作簿
+ * 与SXSSFWorkbook.write相同: 先把不含数据的模板写成临时文件, 再把各sheet的临时数据注入到模板的sheetData中
+ * 区别是重新打包时使用{@link ZipPackageWriter}, 压缩级别可调, sheet可并行压缩
+ */
+class WorkbookPackager {
+
+    private WorkbookPackager() {
+    }
+
+    /**
+     * 输出工作簿, 不关闭输出流, 也不dispose工作簿
+     * @param workbook      将要输出的工作簿
+     * @param outputStream  输出流
+     * @param compression   压缩方式
+     */
+    static void write(SXSSFWorkbook workbook, OutputStream outputStream, Compression compression) throws IOException {
+        XSSFWorkbook template = workbook.getXSSFWorkbook();
+
+        // 模板中sheet的条目名称 -> 对应的流式sheet
+        Map<String, SXSSFSheet> sheets = new HashMap<>();
+        for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
+            String partName = template.getSheetAt(i).getPackagePart().getPartName().getName();
+            sheets.put(partName.substring(1), (SXSSFSheet) workbook.getSheetAt(i));
+        }
+
+        File templateFile = File.createTempFile("excel-template-", ".xlsx");
+        try {
+            try (FileOutputStream templateStream = new FileOutputStream(templateFile)) {
+                template.write(templateStream);
+            }
+
+            try (ZipFile zipFile = new ZipFile(templateFile);
+                 ZipPackageWriter writer = new ZipPackageWriter(outputStream, compression)) {
+                Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+                while (zipEntries.hasMoreElements()) {
+                    ZipEntry zipEntry = zipEntries.nextElement();
+                    SXSSFSheet sheet = sheets.get(zipEntry.getName());
+                    try (InputStream entryStream = zipFile.getInputStream(zipEntry)) {
+                        if (null == sheet) {
+                            writer.putEntry(zipEntry.getName(), entryStream, false);
+                        } else {
+                            try (InputStream sheetStream = injectData(entryStream, sheet.getWorksheetXMLInputStream())) {
+                                writer.putEntry(zipEntry.getName(), sheetStream, true);
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            templateFile.delete();
+        }
+    }
+
+    /**
+     * 模板sheet的sheetData替换成流式写出的数据, 模板本身很小, 读进内存处理
+     */
+    private static InputStream injectData(InputStream templateSheet, InputStream sheetData) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] bytes = new byte[8192];
+        int read;
+        while ((read = templateSheet.read(bytes)) != -1) {
+            buffer.write(bytes, 0, read);
+        }
+        String xml = new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+
+        int start = xml.indexOf("<sheetData");
+        if (start < 0) {
+            throw new IOException("模板中没有找到sheetData");
+        }
+        int end;
+        int tagEnd = xml.indexOf('>', start);
+        if (xml.charAt(tagEnd - 1) == '/') {
+            end = tagEnd + 1;
+        } else {
+            end = xml.indexOf("</sheetData>", tagEnd) + "</sheetData>".length();
+        }
+
+        return new SequenceInputStream(Collections.enumeration(Arrays.asList(
+                new ByteArrayInputStream((xml.substring(0, start) + "<sheetData>").getBytes(StandardCharsets.UTF_8)),
+                sheetData,
+                new ByteArrayInputStream(("</sheetData>" + xml.substring(end)).getBytes(StandardCharsets.UTF_8)))));
+    }
+}
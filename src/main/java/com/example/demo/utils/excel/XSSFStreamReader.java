@@ -0,0 +1,263 @@
+package com.example.demo.utils.excel;
+
+import com.example.demo.utils.excel.goods.ExcelException;
+import com.example.demo.utils.excel.goods.ImportProgress;
+import com.example.demo.utils.excel.goods.RowHandler;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.openxml4j.opc.ZipPackagePart;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAccessor;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * xlsx流式读取器
+ * 用SAX解析sheet的xml, 不创建XSSFWorkbook
+ */
+public class XSSFStreamReader implements StreamReader {
+
+    @Override
+    public void read(File file, RowHandler handler, ImportProgress progress) throws IOException {
+        OPCPackage opcPackage;
+        try {
+            opcPackage = OPCPackage.open(file.getPath(), PackageAccess.READ);
+        } catch (OpenXML4JException e) {
+            throw new ExcelException("导入文件异常:" + e.getMessage());
+        }
+
+        try {
+            XSSFReader xssfReader = new XSSFReader(opcPackage);
+            StylesTable stylesTable = xssfReader.getStylesTable();
+
+            // 目前只支持1页
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) xssfReader.getSheetsData();
+            if (!sheets.hasNext()) {
+                return;
+            }
+            // 共享字符串落盘, 不随文件中字符串的数量占用堆内存
+            try (MappedSharedStrings sharedStrings = MappedSharedStrings.load(opcPackage);
+                 CountingInputStream sheet = new CountingInputStream(sheets.next())) {
+                if (null != progress) {
+                    PackagePart sheetPart = sheets.getSheetPart();
+                    progress.start(sheetPart instanceof ZipPackagePart ? ((ZipPackagePart) sheetPart).getZipArchive().getSize() : -1);
+                }
+                XMLReader xmlReader = SaxReaders.newReader();
+                xmlReader.setContentHandler(new SheetHandler(stylesTable, sharedStrings, handler, sheet, progress));
+                xmlReader.parse(new InputSource(sheet));
+                if (null != progress) {
+                    progress.finish(sheet.getCount());
+                }
+            }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new ExcelException("导入文件异常:" + e.getMessage());
+        } finally {
+            // 只读打开, 不需要回写
+            opcPackage.revert();
+        }
+    }
+
+    /**
+     * 把列引用转化成列号, 如 "AB12" -> 27
+     * @param reference 单元格引用
+     * @return          列号, 从0开始
+     */
+    static int columnIndex(String reference) {
+        int column = 0;
+        for (int i = 0; i < reference.length(); i++) {
+            char c = reference.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                break;
+            }
+            column = column * 26 + (c - 'A' + 1);
+        }
+        return column - 1;
+    }
+
+    /**
+     * sheet xml的处理器
+     */
+    private static class SheetHandler extends DefaultHandler {
+
+        private final StylesTable stylesTable;
+        private final MappedSharedStrings sharedStrings;
+        private final RowHandler handler;
+        // 进度, null表示不报告
+        private final CountingInputStream sheet;
+        private final ImportProgress progress;
+
+        // 当前行的值, 每行复用
+        private final List<Object> values = new ArrayList<>();
+        // 样式是否为日期格式, 按样式下标缓存, 0未知, 1是, 2否
+        private byte[] dateStyles = new byte[16];
+        private int rowIndex = -1;
+        private int columnIndex = -1;
+
+        // 当前单元格的属性
+        private String reference;
+        private String cellType;
+        private String cellStyle;
+        private boolean inValue;
+        private final StringBuilder text = new StringBuilder();
+
+        SheetHandler(StylesTable stylesTable, MappedSharedStrings sharedStrings, RowHandler handler,
+                     CountingInputStream sheet, ImportProgress progress) {
+            this.stylesTable = stylesTable;
+            this.sharedStrings = sharedStrings;
+            this.handler = handler;
+            this.sheet = sheet;
+            this.progress = progress;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "row":
+                    String r = attributes.getValue("r");
+                    rowIndex = r != null ? Integer.parseInt(r) - 1 : rowIndex + 1;
+                    columnIndex = -1;
+                    break;
+                case "c":
+                    reference = attributes.getValue("r");
+                    columnIndex = reference != null ? columnIndex(reference) : columnIndex + 1;
+                    cellType = attributes.getValue("t");
+                    cellStyle = attributes.getValue("s");
+                    text.setLength(0);
+                    break;
+                case "v":
+                case "t":
+                    inValue = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inValue) {
+                text.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (localName) {
+                case "v":
+                case "t":
+                    inValue = false;
+                    break;
+                case "c":
+                    // 公式单元格取文件中缓存的结果, 类型同样由t决定(字符串结果为str), 没有缓存结果时为null
+                    putValue(columnIndex, cellValue());
+                    break;
+                case "row":
+                    handler.onRow(rowIndex, values);
+                    values.clear();
+                    if (null != progress) {
+                        progress.onRow(sheet.getCount());
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        /**
+         * 按单元格类型转化值
+         * 值与类型不符时抛出ExcelException, 指明单元格
+         */
+        private Object cellValue() {
+            if (text.length() == 0) {
+                return null;
+            }
+            String value = text.toString();
+            try {
+                if ("s".equals(cellType)) {
+                    return sharedStrings.getEntryAt(Integer.parseInt(value));
+                } else if ("inlineStr".equals(cellType) || "str".equals(cellType)) {
+                    return value;
+                } else if ("b".equals(cellType)) {
+                    return "1".equals(value);
+                } else if ("e".equals(cellType)) {
+                    return null;
+                } else if ("d".equals(cellType)) {
+                    return isoDate(value);
+                }
+
+                double doubleValue = Double.parseDouble(value);
+                if (null != cellStyle && isDateStyle(Integer.parseInt(cellStyle)) && DateUtil.isValidExcelDate(doubleValue)) {
+                    return DateUtil.getJavaDate(doubleValue);
+                }
+                return doubleValue;
+            } catch (NumberFormatException | DateTimeParseException e) {
+                throw new ExcelException("导入文件异常: 单元格" + (null != reference ? reference : "第" + (rowIndex + 1) + "行第" + (columnIndex + 1) + "列")
+                        + "的值无法解析:" + value);
+            }
+        }
+
+        /**
+         * t="d"的单元格, 值为ISO-8601的日期或时间, 没有时区时按本地时区
+         */
+        private Date isoDate(String value) {
+            if (value.indexOf('T') < 0) {
+                return Date.from(LocalDate.parse(value).atStartOfDay(ZoneId.systemDefault()).toInstant());
+            }
+            TemporalAccessor parsed = DateTimeFormatter.ISO_DATE_TIME.parseBest(value, OffsetDateTime::from, LocalDateTime::from);
+            if (parsed instanceof OffsetDateTime) {
+                return Date.from(((OffsetDateTime) parsed).toInstant());
+            }
+            return Date.from(((LocalDateTime) parsed).atZone(ZoneId.systemDefault()).toInstant());
+        }
+
+        /**
+         * 样式是否为日期格式, 每个样式只判断一次, 不必为每个单元格创建XSSFCellStyle
+         */
+        private boolean isDateStyle(int styleIndex) {
+            if (styleIndex >= dateStyles.length) {
+                dateStyles = Arrays.copyOf(dateStyles, Math.max(styleIndex + 1, dateStyles.length * 2));
+            }
+            if (dateStyles[styleIndex] == 0) {
+                XSSFCellStyle style = stylesTable.getStyleAt(styleIndex);
+                int formatIndex = style.getDataFormat();
+                String formatString = style.getDataFormatString();
+                if (null == formatString) {
+                    formatString = BuiltinFormats.getBuiltinFormat(formatIndex);
+                }
+                dateStyles[styleIndex] = (byte) (DateUtil.isADateFormat(formatIndex, formatString) ? 1 : 2);
+            }
+            return dateStyles[styleIndex] == 1;
+        }
+
+        private void putValue(int column, Object value) {
+            while (values.size() <= column) {
+                values.add(null);
+            }
+            values.set(column, value);
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package com.example.demo.utils.excel;
+
+import com.example.demo.utils.excel.goods.Compression;
+import com.example.demo.utils.excel.goods.ExcelException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 按指定压缩方式写xlsx的zip包
+ * ZipOutputStream的级别对整个包生效, 也不能多核压缩, 所以这里自己写zip结构
+ * 并行时按块切分数据, 各块独立deflate后SYNC_FLUSH对齐到字节边界, 顺序拼接仍是一个合法的deflate流(与pigz相同)
+ * 不支持Zip64, 单个条目或整个包超过4G时报错
+ */
+class ZipPackageWriter implements Closeable {
+
+    // 并行压缩的块大小
+    private static final int BLOCK_SIZE = 1 << 20;
+    // deflate的窗口大小, 用上一块的末尾作字典, 压缩率与整体压缩接近
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    // 每个核最多同时压缩的块数, 限制内存
+    private static final int BLOCKS_PER_THREAD = 2;
+    private static final long ZIP32_LIMIT = 0xFFFFFFFFL;
+
+    // 所有导出共享的压缩线程, 守护线程, 不阻止JVM退出
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), new DaemonThreadFactory());
+
+    private final CountingOutputStream out;
+    private final Compression compression;
+    private final List<Entry> entries = new ArrayList<>();
+    private final int dosTime = dosTime(System.currentTimeMillis());
+
+    ZipPackageWriter(OutputStream out, Compression compression) {
+        this.out = new CountingOutputStream(out);
+        this.compression = compression;
+    }
+
+    /**
+     * 写一个条目, 读完data为止
+     * @param name      条目名称
+     * @param data      条目内容
+     * @param large     是否是大条目, 配置了并行时分块并行压缩
+     */
+    void putEntry(String name, InputStream data, boolean large) throws IOException {
+        Entry entry = new Entry(name.getBytes(StandardCharsets.UTF_8), out.count);
+        entries.add(entry);
+        writeLocalHeader(entry);
+
+        long start = out.count;
+        if (large && compression.isParallel()) {
+            deflateParallel(data, entry);
+        } else {
+            deflate(data, entry);
+        }
+        entry.compressedSize = out.count - start;
+        checkLimit(entry.compressedSize);
+        checkLimit(entry.size);
+
+        writeDataDescriptor(entry);
+    }
+
+    /**
+     * 写中央目录, 不关闭底层的输出流
+     */
+    @Override
+    public void close() throws IOException {
+        if (entries.size() > 0xFFFF) {
+            throw new ExcelException("导出文件的条目数超出zip限制");
+        }
+        long start = out.count;
+        for (Entry entry : entries) {
+            writeInt(0x02014b50);
+            writeShort(20);
+            writeShort(20);
+            writeShort(0x0808);
+            writeShort(Deflater.DEFLATED);
+            writeInt(dosTime);
+            writeInt((int) entry.crc);
+            writeInt((int) entry.compressedSize);
+            writeInt((int) entry.size);
+            writeShort(entry.name.length);
+            // extra, comment, disk, internal attr
+            writeShort(0);
+            writeShort(0);
+            writeShort(0);
+            writeShort(0);
+            writeInt(0);
+            writeInt((int) entry.offset);
+            out.write(entry.name);
+        }
+        long size = out.count - start;
+        checkLimit(out.count);
+
+        writeInt(0x06054b50);
+        writeShort(0);
+        writeShort(0);
+        writeShort(entries.size());
+        writeShort(entries.size());
+        writeInt((int) size);
+        writeInt((int) start);
+        writeShort(0);
+        out.flush();
+    }
+
+    /**
+     * 单线程压缩
+     */
+    private void deflate(InputStream data, Entry entry) throws IOException {
+        Deflater deflater = newDeflater();
+        CRC32 crc = new CRC32();
+        byte[] input = new byte[64 * 1024];
+        byte[] output = new byte[64 * 1024];
+        try {
+            int read;
+            while ((read = data.read(input)) != -1) {
+                crc.update(input, 0, read);
+                entry.size += read;
+                deflater.setInput(input, 0, read);
+                while (!deflater.needsInput()) {
+                    out.write(output, 0, deflater.deflate(output));
+                }
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                out.write(output, 0, deflater.deflate(output));
+            }
+        } finally {
+            deflater.end();
+        }
+        entry.crc = crc.getValue();
+    }
+
+    /**
+     * 分块并行压缩
+     * 读取和CRC在当前线程顺序进行, 压缩交给线程池, 按提交顺序写出
+     */
+    private void deflateParallel(InputStream data, Entry entry) throws IOException {
+        CRC32 crc = new CRC32();
+        int maxInFlight = Runtime.getRuntime().availableProcessors() * BLOCKS_PER_THREAD;
+        Deque<Future<byte[]>> inFlight = new ArrayDeque<>();
+        try {
+            byte[] dictionary = null;
+            byte[] block = readBlock(data);
+            while (true) {
+                crc.update(block);
+                entry.size += block.length;
+                // 预读下一块才知道当前块是不是最后一块
+                byte[] next = block.length < BLOCK_SIZE ? new byte[0] : readBlock(data);
+                boolean last = next.length == 0;
+
+                final byte[] current = block;
+                final byte[] currentDictionary = dictionary;
+                inFlight.addLast(POOL.submit(() -> deflateBlock(current, currentDictionary, last)));
+                while (inFlight.size() >= maxInFlight) {
+                    out.write(await(inFlight.removeFirst()));
+                }
+
+                if (last) {
+                    break;
+                }
+                dictionary = Arrays.copyOfRange(block, Math.max(0, block.length - DICTIONARY_SIZE), block.length);
+                block = next;
+            }
+            while (!inFlight.isEmpty()) {
+                out.write(await(inFlight.removeFirst()));
+            }
+        } finally {
+            for (Future<byte[]> future : inFlight) {
+                future.cancel(true);
+            }
+        }
+        entry.crc = crc.getValue();
+    }
+
+    /**
+     * 压缩一块, 非最后一块SYNC_FLUSH, 最后一块FINISH
+     */
+    private byte[] deflateBlock(byte[] block, byte[] dictionary, boolean last) {
+        Deflater deflater = newDeflater();
+        ByteArrayOutputStream result = new ByteArrayOutputStream(block.length / 4 + 64);
+        byte[] output = new byte[64 * 1024];
+        try {
+            if (null != dictionary) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(block);
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    result.write(output, 0, deflater.deflate(output));
+                }
+            } else {
+                int length;
+                do {
+                    length = deflater.deflate(output, 0, output.length, Deflater.SYNC_FLUSH);
+                    result.write(output, 0, length);
+                } while (length == output.length || !deflater.needsInput());
+            }
+        } finally {
+            deflater.end();
+        }
+        return result.toByteArray();
+    }
+
+    private Deflater newDeflater() {
+        Deflater deflater = new Deflater(compression.getLevel(), true);
+        deflater.setStrategy(compression.getStrategy());
+        return deflater;
+    }
+
+    private static byte[] readBlock(InputStream data) throws IOException {
+        byte[] block = new byte[BLOCK_SIZE];
+        int length = 0;
+        int read;
+        while (length < BLOCK_SIZE && (read = data.read(block, length, BLOCK_SIZE - length)) != -1) {
+            length += read;
+        }
+        return length == BLOCK_SIZE ? block : Arrays.copyOf(block, length);
+    }
+
+    private static byte[] await(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("压缩被中断", e);
+        } catch (ExecutionException e) {
+            throw new IOException("压缩出错", e.getCause());
+        }
+    }
+
+    private void writeLocalHeader(Entry entry) throws IOException {
+        writeInt(0x04034b50);
+        writeShort(20);
+        // bit3 大小写在数据之后, bit11 名称是UTF-8
+        writeShort(0x0808);
+        writeShort(Deflater.DEFLATED);
+        writeInt(dosTime);
+        writeInt(0);
+        writeInt(0);
+        writeInt(0);
+        writeShort(entry.name.length);
+        writeShort(0);
+        out.write(entry.name);
+    }
+
+    private void writeDataDescriptor(Entry entry) throws IOException {
+        writeInt(0x08074b50);
+        writeInt((int) entry.crc);
+        writeInt((int) entry.compressedSize);
+        writeInt((int) entry.size);
+    }
+
+    private static void checkLimit(long value) {
+        if (value > ZIP32_LIMIT) {
+            throw new ExcelException("导出文件超过4G, 请减少导出的数据量");
+        }
+    }
+
+    private void writeShort(int value) throws IOException {
+        out.write(value & 0xFF);
+        out.write((value >>> 8) & 0xFF);
+    }
+
+    private void writeInt(int value) throws IOException {
+        writeShort(value & 0xFFFF);
+        writeShort((value >>> 16) & 0xFFFF);
+    }
+
+    private static int dosTime(long millis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(millis);
+        return (calendar.get(Calendar.YEAR) - 1980) << 25
+                | (calendar.get(Calendar.MONTH) + 1) << 21
+                | calendar.get(Calendar.DAY_OF_MONTH) << 16
+                | calendar.get(Calendar.HOUR_OF_DAY) << 11
+                | calendar.get(Calendar.MINUTE) << 5
+                | calendar.get(Calendar.SECOND) >> 1;
+    }
+
+    /**
+     * 已写出的条目, 用于中央目录
+     */
+    private static class Entry {
+        private final byte[] name;
+        private final long offset;
+        private long crc;
+        private long size;
+        private long compressedSize;
+
+        private Entry(byte[] name, long offset) {
+            this.name = name;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * 记录写出的字节数, 即当前在包中的偏移
+     */
+    private static class CountingOutputStream extends OutputStream {
+        private final OutputStream delegate;
+        private long count;
+
+        private CountingOutputStream(OutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final AtomicInteger sequence = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "excel-deflate-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.demo.utils.excel.goods;
+
+/**
+ * 导入时一个单元格的错误
+ */
+public class CellError {
+
+    /**
+     * 错误原因
+     */
+    public enum Reason {
+        /** 表头与实体的列名不一致 */
+        HEADER_MISMATCH("列名不匹配"),
+        /** 单元格的类型不能转成字段的类型, 如文本填在数字列 */
+        TYPE_MISMATCH("类型不匹配"),
+        /** 带小数的数字填在整数列 */
+        NOT_INTEGER("不是整数"),
+        /** 数字超出字段类型的范围 */
+        OUT_OF_RANGE("超出范围"),
+        /** 字段的类型不支持导入 */
+        UNSUPPORTED("不支持的字段类型");
+
+        private final String description;
+
+        Reason(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    /** 行号, 从1开始, 与Excel中显示的一致 */
+    private final int row;
+    /** 列号, 从0开始 */
+    private final int column;
+    /** 列名 */
+    private final String columnName;
+    /** 单元格中读到的原始值 */
+    private final Object rawValue;
+    /** 错误原因 */
+    private final Reason reason;
+
+    public CellError(int row, int column, String columnName, Object rawValue, Reason reason) {
+        this.row = row;
+        this.column = column;
+        this.columnName = columnName;
+        this.rawValue = rawValue;
+        this.reason = reason;
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    public String getColumnName() {
+        return columnName;
+    }
+
+    public Object getRawValue() {
+        return rawValue;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    @Override
+    public String toString() {
+        return "CellError{" +
+                "row=" + row +
+                ", column=" + column +
+                ", columnName='" + columnName + '\'' +
+                ", rawValue=" + rawValue +
+                ", reason=" + reason +
+                '}';
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.demo.utils.excel.goods;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 列式导出的表结构, 列名和列类型
+ * 声明或推断一次, 之后每个单元格都按列类型直接取值, 不再逐个判断类型
+ */
+public class ColumnSchema {
+
+    private final List<String> names = new ArrayList<>();
+    private final List<ColumnType> types = new ArrayList<>();
+
+    /**
+     * 追加一列
+     * @param name  列名, 即表头
+     * @param type  列类型
+     * @return this
+     */
+    public ColumnSchema column(String name, ColumnType type) {
+        if (null == type) {
+            throw new ExcelException("列类型不能为空, 列名:" + name);
+        }
+        names.add(name);
+        types.add(type);
+        return this;
+    }
+
+    /**
+     * 按一行样本数据推断表结构
+     * @param names     列名
+     * @param sampleRow 样本行, 与列名一一对应, 为null或缺少的列按文本
+     * @return 表结构
+     */
+    public static ColumnSchema infer(List<String> names, List<?> sampleRow) {
+        ColumnSchema schema = new ColumnSchema();
+        for (int i = 0; i < names.size(); i++) {
+            Object value = null != sampleRow && i < sampleRow.size() ? sampleRow.get(i) : null;
+            schema.column(names.get(i), ColumnType.of(null == value ? null : value.getClass()));
+        }
+        return schema;
+    }
+
+    /**
+     * @return 列数
+     */
+    public int size() {
+        return names.size();
+    }
+
+    public String getName(int column) {
+        return names.get(column);
+    }
+
+    public ColumnType getType(int column) {
+        return types.get(column);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("ColumnSchema{");
+        for (int i = 0; i < names.size(); i++) {
+            builder.append(i == 0 ? "" : ", ").append(names.get(i)).append(':').append(types.get(i));
+        }
+        return builder.append('}').toString();
+    }
+}
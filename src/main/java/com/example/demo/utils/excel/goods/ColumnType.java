@@ -0,0 +1,39 @@
+package com.example.demo.utils.excel.goods;
+
+import java.util.Date;
+
+/**
+ * 列式导出中一列的类型, 决定从{@link RowCursor}取值用的getter和单元格的类型
+ */
+public enum ColumnType {
+    /** 文本, {@link RowCursor#getString(int)} */
+    STRING,
+    /** 整数, {@link RowCursor#getLong(int)}, 超出double精确范围的写成文本 */
+    LONG,
+    /** 小数, {@link RowCursor#getDouble(int)} */
+    DOUBLE,
+    /** 布尔, {@link RowCursor#getBoolean(int)} */
+    BOOLEAN,
+    /** 日期, {@link RowCursor#getDate(int)}取毫秒时间戳, 按本地时区写出 */
+    DATE;
+
+    /**
+     * 按Java类型推断列类型, 不认识的类型按文本
+     * BigDecimal, BigInteger等其他数字也按文本, 写成double会丢失精度
+     * @param type 值的类型
+     * @return 列类型
+     */
+    public static ColumnType of(Class<?> type) {
+        if (type == Integer.class || type == Long.class || type == Short.class || type == Byte.class
+                || type == int.class || type == long.class || type == short.class || type == byte.class) {
+            return LONG;
+        } else if (type == Double.class || type == Float.class || type == double.class || type == float.class) {
+            return DOUBLE;
+        } else if (type == Boolean.class || type == boolean.class) {
+            return BOOLEAN;
+        } else if (null != type && Date.class.isAssignableFrom(type)) {
+            return DATE;
+        }
+        return STRING;
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.demo.utils.excel.goods;
+
+import java.util.BitSet;
+
+/**
+ * 以基本类型数组为列的数据源
+ * 每列一个数组, 下标为行号, 数组由调用方填好后交给导出, 不复制
+ */
+public class ColumnVectors implements RowCursor {
+
+    private final int rows;
+    private final String[][] strings;
+    private final long[][] longs;
+    private final double[][] doubles;
+    private final boolean[][] booleans;
+    // 为空的行, null表示该列没有空值; 字符串列的空值直接用null
+    private final BitSet[] nulls;
+    private int row = -1;
+
+    /**
+     * @param rows      行数
+     * @param columns   列数
+     */
+    public ColumnVectors(int rows, int columns) {
+        this.rows = rows;
+        strings = new String[columns][];
+        longs = new long[columns][];
+        doubles = new double[columns][];
+        booleans = new boolean[columns][];
+        nulls = new BitSet[columns];
+    }
+
+    public ColumnVectors strings(int column, String[] values) {
+        strings[column] = checkLength(column, values, null == values ? 0 : values.length);
+        return this;
+    }
+
+    public ColumnVectors longs(int column, long[] values) {
+        longs[column] = checkLength(column, values, null == values ? 0 : values.length);
+        return this;
+    }
+
+    public ColumnVectors doubles(int column, double[] values) {
+        doubles[column] = checkLength(column, values, null == values ? 0 : values.length);
+        return this;
+    }
+
+    public ColumnVectors booleans(int column, boolean[] values) {
+        booleans[column] = checkLength(column, values, null == values ? 0 : values.length);
+        return this;
+    }
+
+    /**
+     * @param epochMillis 毫秒时间戳
+     */
+    public ColumnVectors dates(int column, long[] epochMillis) {
+        return longs(column, epochMillis);
+    }
+
+    /**
+     * 标记基本类型列中为空的行
+     * @param nullRows 为空的行号
+     */
+    public ColumnVectors nulls(int column, BitSet nullRows) {
+        nulls[column] = nullRows;
+        return this;
+    }
+
+    @Override
+    public boolean next() {
+        return ++row < rows;
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        if (null != strings[column]) {
+            return null == strings[column][row];
+        }
+        return null != nulls[column] && nulls[column].get(row);
+    }
+
+    @Override
+    public String getString(int column) {
+        return strings[column][row];
+    }
+
+    @Override
+    public long getLong(int column) {
+        return longs[column][row];
+    }
+
+    @Override
+    public double getDouble(int column) {
+        return doubles[column][row];
+    }
+
+    @Override
+    public boolean getBoolean(int column) {
+        return booleans[column][row];
+    }
+
+    @Override
+    public long getDate(int column) {
+        return longs[column][row];
+    }
+
+    @Override
+    public int rowCount() {
+        return rows;
+    }
+
+    private <A> A checkLength(int column, A values, int length) {
+        if (null == values || length < rows) {
+            throw new ExcelException("第" + column + "列的长度小于行数" + rows);
+        }
+        return values;
+    }
+}
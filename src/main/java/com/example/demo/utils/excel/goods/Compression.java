@@ -0,0 +1,58 @@
+package com.example.demo.utils.excel.goods;
+
+import java.util.zip.Deflater;
+
+/**
+ * 导出文件的压缩方式
+ * 局域网里的客户端用FAST省CPU, 外网的用SMALLEST省流量
+ */
+public class Compression {
+
+    /** 最快, 文件最大 */
+    public static final Compression FAST = new Compression(Deflater.BEST_SPEED, Deflater.DEFAULT_STRATEGY, false);
+    /** 默认, 与POI相同 */
+    public static final Compression DEFAULT = new Compression(Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY, false);
+    /** 最小, 最慢 */
+    public static final Compression SMALLEST = new Compression(Deflater.BEST_COMPRESSION, Deflater.DEFAULT_STRATEGY, false);
+
+    /** 压缩级别, 见Deflater */
+    private final int level;
+    /** 压缩策略, 见Deflater */
+    private final int strategy;
+    /** 大的sheet是否分块多核并行压缩 */
+    private final boolean parallel;
+
+    public Compression(int level, int strategy, boolean parallel) {
+        this.level = level;
+        this.strategy = strategy;
+        this.parallel = parallel;
+    }
+
+    /**
+     * 同样的级别和策略, 并行压缩sheet
+     */
+    public Compression parallel() {
+        return new Compression(level, strategy, true);
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public int getStrategy() {
+        return strategy;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    @Override
+    public String toString() {
+        return "Compression{" +
+                "level=" + level +
+                ", strategy=" + strategy +
+                ", parallel=" + parallel +
+                '}';
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.demo.utils.excel.goods;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Excel文件格式
+ * 根据文件头的魔数判断, 不相信文件后缀
+ */
+public enum ExcelType {
+
+    /** 97-2003格式, OLE2复合文档 */
+    XLS,
+
+    /** 2007+格式, zip包 */
+    XLSX;
+
+    /**
+     * 判断文件的格式
+     * @param file  文件
+     * @return      文件格式
+     */
+    public static ExcelType of(File file) {
+        byte[] head = new byte[8];
+        int length;
+        try (InputStream inputStream = new FileInputStream(file)) {
+            length = inputStream.read(head);
+        } catch (IOException e) {
+            throw new ExcelException("导入文件异常:" + e.getMessage());
+        }
+
+        // OLE2: D0 CF 11 E0 A1 B1 1A E1
+        if (length == 8 && (head[0] & 0xFF) == 0xD0 && (head[1] & 0xFF) == 0xCF
+                && (head[2] & 0xFF) == 0x11 && (head[3] & 0xFF) == 0xE0) {
+            return XLS;
+        }
+        // zip: 50 4B 03 04
+        if (length >= 4 && head[0] == 0x50 && head[1] == 0x4B && head[2] == 0x03 && head[3] == 0x04) {
+            return XLSX;
+        }
+        throw new ExcelException("不支持的文件格式, 请上传xls或xlsx文件");
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.demo.utils.excel.goods;
+
+/**
+ * 导出预算
+ * 限制同时进行的导出数量, 超出的排队等待
+ */
+public class ExportBudget {
+    /** 最大并发导出数 */
+    private int maxConcurrent = Runtime.getRuntime().availableProcessors();
+    /** 最大排队数 */
+    private int maxQueued = 32;
+    /** 排队的最长等待时间, 毫秒 */
+    private long queueTimeoutMillis = 30000;
+    /**
+     * 按行数加权, 每多少行占用一个并发名额
+     * 0表示不加权, 每个导出占用一个名额
+     */
+    private int rowsPerPermit = 0;
+
+    /**
+     * 每个工作簿驻留在内存中的行的目标字节数, 按实测的平均行大小换算成行数并随导出调整
+     * 0表示固定驻留100行
+     */
+    private long rowWindowBytes = 0;
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public void setMaxConcurrent(int maxConcurrent) {
+        this.maxConcurrent = maxConcurrent;
+    }
+
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    public void setMaxQueued(int maxQueued) {
+        this.maxQueued = maxQueued;
+    }
+
+    public long getQueueTimeoutMillis() {
+        return queueTimeoutMillis;
+    }
+
+    public void setQueueTimeoutMillis(long queueTimeoutMillis) {
+        this.queueTimeoutMillis = queueTimeoutMillis;
+    }
+
+    public int getRowsPerPermit() {
+        return rowsPerPermit;
+    }
+
+    public void setRowsPerPermit(int rowsPerPermit) {
+        this.rowsPerPermit = rowsPerPermit;
+    }
+
+    public long getRowWindowBytes() {
+        return rowWindowBytes;
+    }
+
+    public void setRowWindowBytes(long rowWindowBytes) {
+        this.rowWindowBytes = rowWindowBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "ExportBudget{" +
+                "maxConcurrent=" + maxConcurrent +
+                ", maxQueued=" + maxQueued +
+                ", queueTimeoutMillis=" + queueTimeoutMillis +
+                ", rowsPerPermit=" + rowsPerPermit +
+                ", rowWindowBytes=" + rowWindowBytes +
+                '}';
+    }
+}
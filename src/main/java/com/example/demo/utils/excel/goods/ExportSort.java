@@ -0,0 +1,104 @@
+package com.example.demo.utils.excel.goods;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 排序导出的选项: 排序列, 分组小计
+ * 列按@Column的列名指定; 分组列必须是第一个排序列, 每组之后插入一行小计
+ * 数据按段排序, 每段不超过runRows行, 超出时落盘再归并, 内存占用与总行数无关
+ */
+public class ExportSort {
+
+    /** 排序列的列名, 按优先级 */
+    private final List<String> columns = new ArrayList<>();
+    /** 对应的排序列是否降序 */
+    private final List<Boolean> descending = new ArrayList<>();
+    /** 分组列的列名, null表示不分组 */
+    private String groupColumn;
+    /** 小计的列名, 只能是数字列 */
+    private List<String> sumColumns = Collections.emptyList();
+    /** 小计行在分组列中的标签, 跟在分组值之后 */
+    private String subtotalLabel = "小计";
+    /** 内存中一段的行数, 超出时落盘 */
+    private int runRows = 50000;
+
+    /**
+     * 追加一个升序的排序列
+     * @param column 列名
+     * @return this
+     */
+    public ExportSort asc(String column) {
+        columns.add(column);
+        descending.add(false);
+        return this;
+    }
+
+    /**
+     * 追加一个降序的排序列
+     * @param column 列名
+     * @return this
+     */
+    public ExportSort desc(String column) {
+        columns.add(column);
+        descending.add(true);
+        return this;
+    }
+
+    /**
+     * 按列分组, 每组之后插入小计行
+     * @param column        分组列, 必须是第一个排序列
+     * @param sumColumns    小计的数字列
+     * @return this
+     */
+    public ExportSort groupBy(String column, String... sumColumns) {
+        this.groupColumn = column;
+        this.sumColumns = Arrays.asList(sumColumns);
+        return this;
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public boolean isDescending(int key) {
+        return descending.get(key);
+    }
+
+    public String getGroupColumn() {
+        return groupColumn;
+    }
+
+    public List<String> getSumColumns() {
+        return sumColumns;
+    }
+
+    public String getSubtotalLabel() {
+        return subtotalLabel;
+    }
+
+    public void setSubtotalLabel(String subtotalLabel) {
+        this.subtotalLabel = subtotalLabel;
+    }
+
+    public int getRunRows() {
+        return runRows;
+    }
+
+    public void setRunRows(int runRows) {
+        this.runRows = runRows;
+    }
+
+    @Override
+    public String toString() {
+        return "ExportSort{" +
+                "columns=" + columns +
+                ", descending=" + descending +
+                ", groupColumn='" + groupColumn + '\'' +
+                ", sumColumns=" + sumColumns +
+                ", runRows=" + runRows +
+                '}';
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.demo.utils.excel.goods;
 
+import org.apache.poi.ss.usermodel.HorizontalAlignment;
+
 import java.lang.reflect.Method;
 
 /**
@@ -16,6 +18,12 @@ public class FieldColumn {
     private String columnName;
     /** 顺序索引 */
     private int index;
+    /** 单元格格式, 空表示不设置 */
+    private String format = "";
+    /** 水平对齐 */
+    private HorizontalAlignment align = HorizontalAlignment.GENERAL;
+    /** 是否是行的主键列 */
+    private boolean key;
 
     public FieldColumn(Method getter, Method setter, String columnName, int index) {
         this.getter = getter;
@@ -24,6 +32,17 @@ public class FieldColumn {
         this.index = index;
     }
 
+    public FieldColumn(Method getter, Method setter, String columnName, int index, String format, HorizontalAlignment align) {
+        this(getter, setter, columnName, index);
+        this.format = format;
+        this.align = align;
+    }
+
+    public FieldColumn(Method getter, Method setter, String columnName, int index, String format, HorizontalAlignment align, boolean key) {
+        this(getter, setter, columnName, index, format, align);
+        this.key = key;
+    }
+
 
     public Method getGetter() {
         return getter;
@@ -57,6 +76,30 @@ public class FieldColumn {
         this.index = index;
     }
 
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    public HorizontalAlignment getAlign() {
+        return align;
+    }
+
+    public void setAlign(HorizontalAlignment align) {
+        this.align = align;
+    }
+
+    public boolean isKey() {
+        return key;
+    }
+
+    public void setKey(boolean key) {
+        this.key = key;
+    }
+
     @Override
     public String toString() {
         return "FieldColumn{" +
@@ -64,6 +107,9 @@ public class FieldColumn {
                 ", setter=" + setter +
                 ", columnName='" + columnName + '\'' +
                 ", index=" + index +
+                ", format='" + format + '\'' +
+                ", align=" + align +
+                ", key=" + key +
                 '}';
     }
 }
\ No newline at end of file
@@ -0,0 +1,80 @@
+package com.example.demo.utils.excel.goods;
+
+/**
+ * 导入预算
+ * 在解析之前, 用于判断上传文件是拒绝, 排队还是直接读取
+ */
+public class ImportBudget {
+    /** 解压后的最大字节数 */
+    private long maxUncompressedBytes = 512L * 1024 * 1024;
+    /** 最大压缩比, 超过的当作zip炸弹拒绝 */
+    private int maxCompressionRatio = 100;
+    /** 最大数据行数, 不含表头, 读取时按实际读到的行检查 */
+    private long maxRows = 1048576;
+    /** 所有正在进行的导入, 预估内存之和的上限 */
+    private long memoryBudgetBytes = Runtime.getRuntime().maxMemory() / 4;
+    /** 等待内存预算的最大排队数 */
+    private int maxQueued = 16;
+    /** 排队的最长等待时间, 毫秒 */
+    private long queueTimeoutMillis = 30000;
+
+    public long getMaxUncompressedBytes() {
+        return maxUncompressedBytes;
+    }
+
+    public void setMaxUncompressedBytes(long maxUncompressedBytes) {
+        this.maxUncompressedBytes = maxUncompressedBytes;
+    }
+
+    public int getMaxCompressionRatio() {
+        return maxCompressionRatio;
+    }
+
+    public void setMaxCompressionRatio(int maxCompressionRatio) {
+        this.maxCompressionRatio = maxCompressionRatio;
+    }
+
+    public long getMaxRows() {
+        return maxRows;
+    }
+
+    public void setMaxRows(long maxRows) {
+        this.maxRows = maxRows;
+    }
+
+    public long getMemoryBudgetBytes() {
+        return memoryBudgetBytes;
+    }
+
+    public void setMemoryBudgetBytes(long memoryBudgetBytes) {
+        this.memoryBudgetBytes = memoryBudgetBytes;
+    }
+
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    public void setMaxQueued(int maxQueued) {
+        this.maxQueued = maxQueued;
+    }
+
+    public long getQueueTimeoutMillis() {
+        return queueTimeoutMillis;
+    }
+
+    public void setQueueTimeoutMillis(long queueTimeoutMillis) {
+        this.queueTimeoutMillis = queueTimeoutMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "ImportBudget{" +
+                "maxUncompressedBytes=" + maxUncompressedBytes +
+                ", maxCompressionRatio=" + maxCompressionRatio +
+                ", maxRows=" + maxRows +
+                ", memoryBudgetBytes=" + memoryBudgetBytes +
+                ", maxQueued=" + maxQueued +
+                ", queueTimeoutMillis=" + queueTimeoutMillis +
+                '}';
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.demo.utils.excel.goods;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 增量导入的结果, 与上一次导入同一张表相比的变化
+ * @param <T> 实体泛型
+ */
+public class ImportChanges<T> {
+
+    /** 新增的行 */
+    private List<T> inserted = new ArrayList<>();
+    /** 内容变化的行 */
+    private List<T> changed = new ArrayList<>();
+    /** 删除的行的主键, 多个主键列之间用(char) 1分隔 */
+    private List<String> deletedKeys = new ArrayList<>();
+    /** 没有变化的行数 */
+    private int unchanged;
+
+    public List<T> getInserted() {
+        return inserted;
+    }
+
+    public void setInserted(List<T> inserted) {
+        this.inserted = inserted;
+    }
+
+    public List<T> getChanged() {
+        return changed;
+    }
+
+    public void setChanged(List<T> changed) {
+        this.changed = changed;
+    }
+
+    public List<String> getDeletedKeys() {
+        return deletedKeys;
+    }
+
+    public void setDeletedKeys(List<String> deletedKeys) {
+        this.deletedKeys = deletedKeys;
+    }
+
+    public int getUnchanged() {
+        return unchanged;
+    }
+
+    public void setUnchanged(int unchanged) {
+        this.unchanged = unchanged;
+    }
+
+    @Override
+    public String toString() {
+        return "ImportChanges{" +
+                "inserted=" + inserted.size() +
+                ", changed=" + changed.size() +
+                ", deleted=" + deletedKeys.size() +
+                ", unchanged=" + unchanged +
+                '}';
+    }
+}
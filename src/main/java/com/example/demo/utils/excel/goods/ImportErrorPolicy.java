@@ -0,0 +1,36 @@
+package com.example.demo.utils.excel.goods;
+
+/**
+ * 带错误报告的导入的限制
+ * 报告只保留前若干个错误, 出错的行超过阈值时停止读取
+ */
+public class ImportErrorPolicy {
+    /** 报告中最多保留的错误数, 之后只计数 */
+    private int maxRecordedErrors = 100;
+    /** 最多容忍的出错行数, 超过时停止读取; 负数表示不限制 */
+    private long maxErrorRows = 1000;
+
+    public int getMaxRecordedErrors() {
+        return maxRecordedErrors;
+    }
+
+    public void setMaxRecordedErrors(int maxRecordedErrors) {
+        this.maxRecordedErrors = maxRecordedErrors;
+    }
+
+    public long getMaxErrorRows() {
+        return maxErrorRows;
+    }
+
+    public void setMaxErrorRows(long maxErrorRows) {
+        this.maxErrorRows = maxErrorRows;
+    }
+
+    @Override
+    public String toString() {
+        return "ImportErrorPolicy{" +
+                "maxRecordedErrors=" + maxRecordedErrors +
+                ", maxErrorRows=" + maxErrorRows +
+                '}';
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.demo.utils.excel.goods;
+
+/**
+ * 导入文件的预估信息
+ * 只读zip目录和sheet开头得到, 不解析内容
+ */
+public class ImportEstimate {
+    /** 文件格式 */
+    private ExcelType type;
+    /** 压缩后字节数, 即文件大小 */
+    private long compressedBytes;
+    /** 解压后字节数 */
+    private long uncompressedBytes;
+    /** sharedStrings解压后字节数 */
+    private long sharedStringsBytes;
+    /** 预估行数 */
+    private long rows;
+    /** 预估单元格数 */
+    private long cells;
+    /** 预估读取时占用的内存 */
+    private long memoryBytes;
+
+    public ExcelType getType() {
+        return type;
+    }
+
+    public void setType(ExcelType type) {
+        this.type = type;
+    }
+
+    public long getCompressedBytes() {
+        return compressedBytes;
+    }
+
+    public void setCompressedBytes(long compressedBytes) {
+        this.compressedBytes = compressedBytes;
+    }
+
+    public long getUncompressedBytes() {
+        return uncompressedBytes;
+    }
+
+    public void setUncompressedBytes(long uncompressedBytes) {
+        this.uncompressedBytes = uncompressedBytes;
+    }
+
+    public long getSharedStringsBytes() {
+        return sharedStringsBytes;
+    }
+
+    public void setSharedStringsBytes(long sharedStringsBytes) {
+        this.sharedStringsBytes = sharedStringsBytes;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public void setRows(long rows) {
+        this.rows = rows;
+    }
+
+    public long getCells() {
+        return cells;
+    }
+
+    public void setCells(long cells) {
+        this.cells = cells;
+    }
+
+    public long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    public void setMemoryBytes(long memoryBytes) {
+        this.memoryBytes = memoryBytes;
+    }
+
+    /**
+     * 压缩比
+     */
+    public long compressionRatio() {
+        return compressedBytes > 0 ? uncompressedBytes / compressedBytes : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "ImportEstimate{" +
+                "type=" + type +
+                ", compressedBytes=" + compressedBytes +
+                ", uncompressedBytes=" + uncompressedBytes +
+                ", sharedStringsBytes=" + sharedStringsBytes +
+                ", rows=" + rows +
+                ", cells=" + cells +
+                ", memoryBytes=" + memoryBytes +
+                '}';
+    }
+}
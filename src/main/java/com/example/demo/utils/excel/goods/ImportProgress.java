@@ -0,0 +1,148 @@
+package com.example.demo.utils.excel.goods;
+
+/**
+ * 导入的进度和取消
+ * 调用方创建后传给导入方法, 在其他线程中读取进度, 或者取消, 设置截止时间
+ * 读取器每读若干行发布一次进度并检查, 已取消或超时时以{@link ExcelException}结束导入, 不再解析剩下的内容
+ * 字节数按读取器实际消费的数据计算: xlsx为第一页解压后的xml, xls为工作簿流
+ */
+public class ImportProgress {
+
+    // 每读多少行发布一次进度, 检查一次取消
+    private static final int CHECK_INTERVAL = 256;
+
+    /** 是否已取消 */
+    private volatile boolean cancelled;
+    /** 截止时间, System.currentTimeMillis的毫秒数, 0表示不限 */
+    private volatile long deadline;
+    /** 已读取的行数, 包括表头 */
+    private volatile long rows;
+    /** 已读取的字节数 */
+    private volatile long bytesRead;
+    /** 总字节数, 未知时为-1 */
+    private volatile long totalBytes = -1;
+    /** 是否已读完 */
+    private volatile boolean finished;
+    /** 读取线程自己的行计数, 每CHECK_INTERVAL行发布到rows */
+    private long rowCount;
+
+    /**
+     * 取消导入, 读取线程在下一次检查时停止
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public long getDeadline() {
+        return deadline;
+    }
+
+    public void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * 预估的总行数, 按已读的行数和字节数外推, 读完后为实际行数
+     * @return 总行数, 还无法估计时为-1
+     */
+    public long getEstimatedRows() {
+        long currentRows = rows;
+        long currentBytes = bytesRead;
+        if (finished) {
+            return currentRows;
+        }
+        if (currentBytes <= 0 || totalBytes <= 0) {
+            return -1;
+        }
+        return Math.max(currentRows, (long) ((double) currentRows * totalBytes / currentBytes));
+    }
+
+    /**
+     * 完成的比例, 按字节数计算
+     * @return 0到1之间, 总字节数未知时为0
+     */
+    public double getFraction() {
+        if (finished) {
+            return 1;
+        }
+        if (totalBytes <= 0) {
+            return 0;
+        }
+        return Math.min(1, (double) bytesRead / totalBytes);
+    }
+
+    /**
+     * 开始读取, 由读取器调用; 已取消或超时时直接结束
+     * @param totalBytes 将要读取的总字节数, 未知时为-1
+     */
+    public void start(long totalBytes) {
+        this.rowCount = 0;
+        this.rows = 0;
+        this.bytesRead = 0;
+        this.finished = false;
+        this.totalBytes = totalBytes;
+        check();
+    }
+
+    /**
+     * 读完一行, 由读取器调用
+     * @param bytesRead 到这一行为止读取的字节数
+     */
+    public void onRow(long bytesRead) {
+        if (++rowCount % CHECK_INTERVAL == 0) {
+            this.bytesRead = bytesRead;
+            this.rows = rowCount;
+            check();
+        }
+    }
+
+    /**
+     * 读取结束, 由读取器调用
+     * @param bytesRead 读取的总字节数
+     */
+    public void finish(long bytesRead) {
+        this.bytesRead = bytesRead;
+        this.rows = rowCount;
+        this.finished = true;
+    }
+
+    private void check() {
+        if (cancelled) {
+            throw new ExcelException("导入已取消");
+        }
+        if (deadline > 0 && System.currentTimeMillis() > deadline) {
+            throw new ExcelException("导入超时");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ImportProgress{" +
+                "rows=" + rows +
+                ", bytesRead=" + bytesRead +
+                ", totalBytes=" + totalBytes +
+                ", cancelled=" + cancelled +
+                ", finished=" + finished +
+                '}';
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.demo.utils.excel.goods;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 带错误报告的导入结果
+ * 有错误的行不进入data, 其错误记在errors中, 超出{@link ImportErrorPolicy#getMaxRecordedErrors()}的只计数
+ * @param <T> 实体泛型
+ */
+public class ImportResult<T> {
+
+    /** 没有错误的行 */
+    private List<T> data = new ArrayList<>();
+    /** 保留的错误, 按出现的顺序 */
+    private List<CellError> errors = new ArrayList<>();
+    /** 错误总数, 包括没有保留的 */
+    private long errorCount;
+    /** 有错误的行数 */
+    private long errorRows;
+    /** 是否因出错行数超过阈值或表头不匹配而提前停止, 此时data只包含停止前读到的行 */
+    private boolean aborted;
+
+    /**
+     * @return 是否没有任何错误
+     */
+    public boolean isSuccess() {
+        return errorCount == 0 && !aborted;
+    }
+
+    public List<T> getData() {
+        return data;
+    }
+
+    public void setData(List<T> data) {
+        this.data = data;
+    }
+
+    public List<CellError> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<CellError> errors) {
+        this.errors = errors;
+    }
+
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    public void setErrorCount(long errorCount) {
+        this.errorCount = errorCount;
+    }
+
+    public long getErrorRows() {
+        return errorRows;
+    }
+
+    public void setErrorRows(long errorRows) {
+        this.errorRows = errorRows;
+    }
+
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    public void setAborted(boolean aborted) {
+        this.aborted = aborted;
+    }
+
+    @Override
+    public String toString() {
+        return "ImportResult{" +
+                "rows=" + data.size() +
+                ", errorCount=" + errorCount +
+                ", errorRows=" + errorRows +
+                ", aborted=" + aborted +
+                ", errors=" + errors +
+                '}';
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.demo.utils.excel.goods;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 打包导出中的一张报表
+ * 数据在导出线程中才取, 多张报表的查询也能并行, 且不会同时驻留在内存中
+ * @param <T> 实体泛型
+ */
+public class ReportSpec<T> {
+    /** 实体类型信息, 需要使用@Excel */
+    private final Class<T> modelClass;
+    /** 报表的文件名, 用于识别实体参与的哪一张excel, 同时是包中的文件名; null时取@Excel的第一个 */
+    private final String fileName;
+    /** 报表的数据 */
+    private final Supplier<List<T>> dataSource;
+
+    public ReportSpec(Class<T> modelClass, String fileName, Supplier<List<T>> dataSource) {
+        this.modelClass = modelClass;
+        this.fileName = fileName;
+        this.dataSource = dataSource;
+    }
+
+    public Class<T> getModelClass() {
+        return modelClass;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public Supplier<List<T>> getDataSource() {
+        return dataSource;
+    }
+
+    @Override
+    public String toString() {
+        return "ReportSpec{" +
+                "modelClass=" + modelClass.getName() +
+                ", fileName='" + fileName + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.demo.utils.excel.goods;
+
+/**
+ * 列式导出的数据源, 逐行前进, 按列号用类型化的getter取值
+ * 取值方法由{@link ColumnSchema}中的列类型决定, 调用方不需要装箱
+ * 可以包装数据库的结果集, 也可以用{@link ColumnVectors}包装基本类型数组
+ */
+public interface RowCursor {
+
+    /**
+     * 移到下一行, 第一次调用移到第一行
+     * @return 是否还有数据
+     */
+    boolean next();
+
+    /**
+     * 当前行的某列是否为空, 为空时不写单元格
+     * @param column 列号, 从0开始
+     */
+    boolean isNull(int column);
+
+    String getString(int column);
+
+    long getLong(int column);
+
+    double getDouble(int column);
+
+    boolean getBoolean(int column);
+
+    /**
+     * @return 毫秒时间戳
+     */
+    long getDate(int column);
+
+    /**
+     * 总行数, 用于导出前的行数限制和导出名额的加权
+     * @return 行数, 未知时为-1
+     */
+    default int rowCount() {
+        return -1;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.demo.utils.excel.goods;
+
+import java.util.List;
+
+/**
+ * 流式读取时, 每读完一行回调一次
+ */
+public interface RowHandler {
+
+    /**
+     * 处理一行数据
+     * @param rowIndex  行号, 从0开始
+     * @param values    单元格的值, 下标为列号, 空单元格为null
+     *                  值的类型只有 Boolean, Double, Date, String
+     *                  读取器每行复用同一个List, 回调返回后内容即失效, 需要保留时自行复制
+     */
+    void onRow(int rowIndex, List<Object> values);
+}
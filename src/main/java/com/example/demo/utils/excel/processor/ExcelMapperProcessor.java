@@ -0,0 +1,449 @@
+package com.example.demo.utils.excel.processor;
+
+import com.example.demo.utils.excel.ExcelMappers;
+import com.example.demo.utils.excel.tips.Column;
+import com.example.demo.utils.excel.tips.Excel;
+import org.apache.poi.ss.usermodel.HorizontalAlignment;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 注解处理器
+ * 编译期为每个@Excel实体的每个@Excel.value生成{@link com.example.demo.utils.excel.ExcelMapper},
+ * 直接调用getter/setter, 按列类型生成读写代码, 列顺序在编译期确定
+ * 列的匹配规则与{@link com.example.demo.utils.excel.Sniffer}一致
+ */
+@SupportedAnnotationTypes("com.example.demo.utils.excel.tips.Excel")
+public class ExcelMapperProcessor extends AbstractProcessor {
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(Excel.class)) {
+            if (element instanceof TypeElement) {
+                TypeElement type = (TypeElement) element;
+                if (isMappable(type)) {
+                    generate(type);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 只有public, 非抽象, 有public无参构造的实体才生成
+     */
+    private boolean isMappable(TypeElement type) {
+        if (!type.getModifiers().contains(Modifier.PUBLIC) || type.getModifiers().contains(Modifier.ABSTRACT)
+                || type.getNestingKind().isNested() && !type.getModifiers().contains(Modifier.STATIC)) {
+            note(type, "实体不是public的非抽象类, 不生成ExcelMapper, 使用反射");
+            return false;
+        }
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC)) {
+                return true;
+            }
+        }
+        note(type, "实体没有public无参构造, 不生成ExcelMapper, 使用反射");
+        return false;
+    }
+
+    /**
+     * 生成一个实体的所有映射
+     */
+    private void generate(TypeElement type) {
+        String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        String mapperName = ExcelMappers.mapperClassName(binaryName);
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String simpleName = mapperName.substring(packageName.isEmpty() ? 0 : packageName.length() + 1);
+        String modelName = type.getQualifiedName().toString();
+        String[] fileNames = type.getAnnotation(Excel.class).value();
+
+        StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("/**\n * 由ExcelMapperProcessor生成, 请勿修改\n */\n");
+        source.append("public final class ").append(simpleName).append(" {\n\n");
+
+        for (int i = 0; i < fileNames.length; i++) {
+            List<MappedColumn> columns;
+            try {
+                columns = resolveColumns(type, fileNames[i]);
+            } catch (IllegalStateException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage(), type);
+                return;
+            }
+            appendMapper(source, "Mapper" + i, modelName, columns);
+        }
+
+        // 按文件名查找
+        source.append("    public static com.example.demo.utils.excel.ExcelMapper<").append(modelName).append("> ")
+                .append(ExcelMappers.FACTORY_METHOD).append("(String fileName) {\n");
+        for (int i = 0; i < fileNames.length; i++) {
+            source.append("        if (").append(literal(fileNames[i])).append(".equals(fileName)) {\n")
+                    .append("            return Mapper").append(i).append(".INSTANCE;\n")
+                    .append("        }\n");
+        }
+        source.append("        return null;\n    }\n\n");
+        source.append("    private ").append(simpleName).append("() {\n    }\n}\n");
+
+        try (Writer writer = processingEnv.getFiler().createSourceFile(mapperName, type).openWriter()) {
+            writer.write(source.toString());
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "生成ExcelMapper出错: " + e.getMessage(), type);
+        }
+    }
+
+    /**
+     * 生成一个@Excel.value的映射类
+     */
+    private void appendMapper(StringBuilder source, String className, String modelName, List<MappedColumn> columns) {
+        source.append("    private static final class ").append(className)
+                .append(" implements com.example.demo.utils.excel.ExcelMapper<").append(modelName).append("> {\n\n");
+        source.append("        static final ").append(className).append(" INSTANCE = new ").append(className).append("();\n\n");
+
+        // 列名
+        source.append("        private static final java.util.List<String> COLUMN_NAMES = java.util.Collections.unmodifiableList(java.util.Arrays.asList(");
+        for (int i = 0; i < columns.size(); i++) {
+            source.append(i == 0 ? "" : ", ").append(literal(columns.get(i).columnName));
+        }
+        source.append("));\n\n");
+        source.append("        @Override\n        public java.util.List<String> columnNames() {\n            return COLUMN_NAMES;\n        }\n\n");
+
+        // 样式
+        source.append("        @Override\n        public org.apache.poi.ss.usermodel.CellStyle[] columnStyles(com.example.demo.utils.excel.StylePool stylePool) {\n")
+                .append("            return new org.apache.poi.ss.usermodel.CellStyle[] {\n");
+        for (int i = 0; i < columns.size(); i++) {
+            MappedColumn column = columns.get(i);
+            source.append("                stylePool.columnStyle(").append("java.util.Date".equals(column.type.toString()))
+                    .append(", ").append(literal(column.format))
+                    .append(", org.apache.poi.ss.usermodel.HorizontalAlignment.").append(column.align.name()).append("),\n");
+        }
+        source.append("            };\n        }\n\n");
+
+        // 写
+        source.append("        @Override\n        public void fillRow(org.apache.poi.ss.usermodel.Row row, ")
+                .append(modelName).append(" data, org.apache.poi.ss.usermodel.CellStyle[] columnStyles) {\n");
+        for (int i = 0; i < columns.size(); i++) {
+            source.append("            try {\n")
+                    .append("                org.apache.poi.ss.usermodel.Cell cell = row.createCell(").append(i).append(");\n")
+                    .append("                if (null != columnStyles[").append(i).append("]) {\n")
+                    .append("                    cell.setCellStyle(columnStyles[").append(i).append("]);\n")
+                    .append("                }\n");
+            appendFill(source, columns.get(i));
+            source.append("            } catch (RuntimeException e) {\n")
+                    .append("                com.example.demo.utils.excel.ExcelMappers.fillError(").append(i).append(", data);\n")
+                    .append("            }\n");
+        }
+        source.append("        }\n\n");
+
+        // 读
+        source.append("        @Override\n        public ").append(modelName).append(" readRow(java.util.List<Object> values) {\n")
+                .append("            ").append(modelName).append(" data = new ").append(modelName).append("();\n")
+                .append("            fill(values, data);\n")
+                .append("            return data;\n        }\n\n");
+
+        // 复用实体读, 先重置所有映射的字段
+        source.append("        @Override\n        public void readRow(java.util.List<Object> values, ").append(modelName).append(" data) {\n");
+        for (MappedColumn column : columns) {
+            source.append("            data.").append(column.setter).append("(").append(defaultValue(column.type)).append(");\n");
+        }
+        source.append("            fill(values, data);\n        }\n\n");
+
+        source.append("        private void fill(java.util.List<Object> values, ").append(modelName).append(" data) {\n")
+                .append("            Object value;\n");
+        for (int i = 0; i < columns.size(); i++) {
+            source.append("            value = com.example.demo.utils.excel.ExcelMappers.valueAt(values, ").append(i).append(");\n")
+                    .append("            if (null != value) {\n")
+                    .append("                try {\n");
+            appendRead(source, columns.get(i));
+            source.append("                } catch (RuntimeException e) {\n")
+                    .append("                    com.example.demo.utils.excel.ExcelMappers.readError(").append(i).append(", ")
+                    .append(literal(columns.get(i).columnName)).append(");\n")
+                    .append("                }\n")
+                    .append("            }\n");
+        }
+        source.append("        }\n    }\n\n");
+    }
+
+    /**
+     * 字段类型的默认值, 用于复用实体前的重置
+     */
+    private String defaultValue(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return "false";
+            case BYTE:
+            case SHORT:
+            case CHAR:
+            case INT:
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+                return "(" + type + ") 0";
+            default:
+                // 带上类型, 避免setter重载时有歧义
+                return "(" + type + ") null";
+        }
+    }
+
+    /**
+     * 按列类型生成写单元格的代码, 与ExcelConvertor.fillRow一致
+     */
+    private void appendFill(StringBuilder source, MappedColumn column) {
+        String get = "data." + column.getter + "()";
+        String indent = "                ";
+        if (column.type.getKind().isPrimitive()) {
+            switch (column.type.getKind()) {
+                case INT:
+                case SHORT:
+                    source.append(indent).append("cell.setCellValue((double) ").append(get).append(");\n");
+                    break;
+                case BOOLEAN:
+                case DOUBLE:
+                    source.append(indent).append("cell.setCellValue(").append(get).append(");\n");
+                    break;
+                default:
+                    // long, float, byte, char与fillRow一样写成文本
+                    source.append(indent).append("cell.setCellValue(String.valueOf(").append(get).append("));\n");
+                    break;
+            }
+            return;
+        }
+
+        String typeName = column.type.toString();
+        source.append(indent).append(typeName).append(" value = ").append(get).append(";\n")
+                .append(indent).append("if (null == value) {\n")
+                .append(indent).append("    cell.setCellValue(\"\");\n")
+                .append(indent).append("} else {\n");
+        switch (typeName) {
+            case "java.lang.String":
+            case "java.util.Date":
+                source.append(indent).append("    cell.setCellValue(value);\n");
+                break;
+            case "java.lang.Integer":
+            case "java.lang.Short":
+            case "java.lang.Double":
+                source.append(indent).append("    cell.setCellValue(value.doubleValue());\n");
+                break;
+            case "java.lang.Boolean":
+                source.append(indent).append("    cell.setCellValue(value.booleanValue());\n");
+                break;
+            default:
+                source.append(indent).append("    cell.setCellValue(String.valueOf(value));\n");
+                break;
+        }
+        source.append(indent).append("}\n");
+    }
+
+    /**
+     * 按列类型生成读单元格的代码, 与ExcelConvertor.readRow一致
+     */
+    private void appendRead(StringBuilder source, MappedColumn column) {
+        String set = "data." + column.setter;
+        String indent = "                    ";
+        String typeName = column.type.toString();
+        switch (typeName) {
+            case "boolean":
+            case "java.lang.Boolean":
+                source.append(indent).append("if (value instanceof Boolean) {\n")
+                        .append(indent).append("    ").append(set).append("((Boolean) value);\n")
+                        .append(indent).append("}\n");
+                break;
+            case "java.lang.String":
+                source.append(indent).append(set).append("(com.example.demo.utils.excel.ExcelMappers.format(value));\n");
+                break;
+            case "java.util.Date":
+                source.append(indent).append("if (value instanceof java.util.Date) {\n")
+                        .append(indent).append("    ").append(set).append("((java.util.Date) value);\n")
+                        .append(indent).append("}\n");
+                break;
+            case "double":
+            case "java.lang.Double":
+                appendNumberRead(source, indent, set, "");
+                break;
+            case "int":
+            case "java.lang.Integer":
+                appendNumberRead(source, indent, set, "(int) ");
+                break;
+            case "short":
+            case "java.lang.Short":
+                appendNumberRead(source, indent, set, "(short) ");
+                break;
+            case "long":
+            case "java.lang.Long":
+                appendNumberRead(source, indent, set, "(long) ");
+                break;
+            default:
+                // 其他类型无法从单元格转化
+                source.append(indent).append("// ").append(typeName).append(" 不支持导入\n");
+                break;
+        }
+    }
+
+    private void appendNumberRead(StringBuilder source, String indent, String set, String cast) {
+        source.append(indent).append("if (value instanceof Double) {\n")
+                .append(indent).append("    ").append(set).append("(").append(cast).append("((Double) value).doubleValue());\n")
+                .append(indent).append("}\n");
+    }
+
+    /**
+     * 解析一个@Excel.value对应的列, 规则同Sniffer.findFieldColumns
+     */
+    private List<MappedColumn> resolveColumns(TypeElement type, String fileName) {
+        List<MappedColumn> columns = new ArrayList<>();
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            Column column = findColumn(field, fileName);
+            if (null == column) {
+                continue;
+            }
+            MappedColumn mappedColumn = createColumn(type, field, column);
+            if (null != mappedColumn) {
+                columns.add(mappedColumn);
+            }
+        }
+        columns.sort((c1, c2) -> c1.index - c2.index);
+        if (columns.isEmpty()) {
+            throw new IllegalStateException("未找到相匹配的@Column,文件名为:" + fileName);
+        }
+        return columns;
+    }
+
+    /**
+     * 找到字段上与文件名匹配的@Column, 同Sniffer.findColumn
+     */
+    private Column findColumn(VariableElement field, String fileName) {
+        List<Column> fixColumnList = new ArrayList<>();
+        for (Column column : field.getAnnotationsByType(Column.class)) {
+            String[] belongFiles = column.belong();
+            if (belongFiles.length == 1 && "".equals(belongFiles[0])) {
+                fixColumnList.add(column);
+            } else {
+                for (String belongFile : belongFiles) {
+                    if (fileName.equals(belongFile)) {
+                        fixColumnList.add(column);
+                        break;
+                    }
+                }
+            }
+        }
+
+        // 越是精确的,优先级越高, 即belong数量少的最高
+        Column column = null;
+        for (Column candidate : fixColumnList) {
+            if (null == column) {
+                column = candidate;
+                continue;
+            }
+            boolean columnAny = column.belong().length == 1 && "".equals(column.belong()[0]);
+            boolean candidateAny = candidate.belong().length == 1 && "".equals(candidate.belong()[0]);
+            if (columnAny) {
+                // 都不限定时取后面的, 与Sniffer中min的结果相同
+                column = candidate;
+            } else if (!columnAny && !candidateAny) {
+                if (column.belong().length == candidate.belong().length) {
+                    throw new IllegalStateException("无法判断@Column精度,请修改使用方法, 字段:" + field.getSimpleName());
+                }
+                if (candidate.belong().length < column.belong().length) {
+                    column = candidate;
+                }
+            }
+        }
+        return column;
+    }
+
+    /**
+     * 找到getter和setter, 找不到时跳过该列, 同Sniffer.createFieldColumn
+     */
+    private MappedColumn createColumn(TypeElement type, VariableElement field, Column column) {
+        String fieldName = field.getSimpleName().toString();
+        String suffix = Character.toUpperCase(fieldName.charAt(0)) + fieldName.substring(1);
+        String getter = (field.asType().getKind() == TypeKind.BOOLEAN ? "is" : "get") + suffix;
+        String setter = "set" + suffix;
+
+        boolean hasGetter = false;
+        boolean hasSetter = false;
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+            if (!method.getModifiers().contains(Modifier.PUBLIC)) {
+                continue;
+            }
+            String name = method.getSimpleName().toString();
+            if (name.equals(getter) && method.getParameters().isEmpty()) {
+                hasGetter = true;
+            } else if (name.equals(setter) && method.getParameters().size() == 1
+                    && processingEnv.getTypeUtils().isSameType(method.getParameters().get(0).asType(), field.asType())) {
+                hasSetter = true;
+            }
+        }
+        if (!hasGetter || !hasSetter) {
+            note(field, "未找到字段 " + fieldName + " 合法的getter或setter方法, 跳过该列");
+            return null;
+        }
+
+        MappedColumn mappedColumn = new MappedColumn();
+        mappedColumn.type = field.asType();
+        mappedColumn.getter = getter;
+        mappedColumn.setter = setter;
+        mappedColumn.columnName = "".equals(column.value()) ? fieldName : column.value();
+        mappedColumn.index = column.index();
+        mappedColumn.format = column.format();
+        mappedColumn.align = column.align();
+        return mappedColumn;
+    }
+
+    private void note(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, message, element);
+    }
+
+    /**
+     * 转成java字符串字面量, 非ASCII字符转义
+     */
+    private static String literal(String value) {
+        StringBuilder literal = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                literal.append('\\').append(c);
+            } else if (c < 0x20 || c > 0x7E) {
+                literal.append(String.format("\\u%04x", (int) c));
+            } else {
+                literal.append(c);
+            }
+        }
+        return literal.append('"').toString();
+    }
+
+    /**
+     * 编译期的列信息
+     */
+    private static class MappedColumn {
+        TypeMirror type;
+        String getter;
+        String setter;
+        String columnName;
+        int index;
+        String format;
+        HorizontalAlignment align;
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.demo.utils.excel.tips;
 
+import org.apache.poi.ss.usermodel.HorizontalAlignment;
+
 import java.lang.annotation.*;
 
 /**
@@ -22,4 +24,19 @@ public @interface Column{
 
     /** 属于哪个@Excel, 填@Excel.value */
     String[] belong() default "";
+
+    /**
+     * 单元格格式, 如 "0.00", "0%", "yyyy-MM-dd"
+     * 默认不设置, 日期列默认为 m/d/yy h:mm
+     */
+    String format() default "";
+
+    /** 水平对齐 */
+    HorizontalAlignment align() default HorizontalAlignment.GENERAL;
+
+    /**
+     * 是否是行的主键列, 增量导入时用来识别同一行
+     * 可以有多个主键列, 都没有时整行作为主键
+     */
+    boolean key() default false;
 }
@@ -18,4 +18,10 @@ public @interface Excel {
 
     /** 最大导出条数 */
     int limit() default 1040000;
+
+    /**
+     * 估算列宽时抽样的行数, 表头加前N行, 再从后面的行里随机抽N行
+     * 0表示不估算, 使用默认列宽
+     */
+    int widthSample() default 0;
 }
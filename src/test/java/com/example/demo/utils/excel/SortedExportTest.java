@@ -0,0 +1,282 @@
+package com.example.demo.utils.excel;
+
+import com.example.demo.utils.excel.goods.ExcelException;
+import com.example.demo.utils.excel.goods.ExportSort;
+import com.example.demo.utils.excel.goods.FieldColumn;
+import com.example.demo.utils.excel.tips.Column;
+import com.example.demo.utils.excel.tips.Excel;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 排序导出: 多段归并, 稳定性, 分组小计, 失败时删除临时文件
+ */
+public class SortedExportTest {
+
+    private static final String[] REGIONS = {"华东", "华北", "西南", "东北"};
+
+    private final ExcelConvertor convertor = new ExcelConvertor();
+    private final List<FieldColumn> fieldColumnList = new Sniffer().findFieldColumns(Order.class, null);
+
+    @Test
+    public void mergesSpilledRunsInOrder() throws IOException {
+        List<Order> data = orders(10000);
+        ExportSort sort = new ExportSort().asc("区域").desc("金额");
+        sort.setRunRows(1000);
+
+        int baseline = runFiles();
+        CountingIterator<Order> source = new CountingIterator<>(data.iterator());
+        Sheet sheet = reopen(convertor.createSortedExcel(source, fieldColumnList, sort, 1040000, 0));
+        Assert.assertTrue("数据超过一段时应当落盘", source.maxRunFiles > baseline);
+        Assert.assertEquals("完成后应当删除所有段", baseline, runFiles());
+
+        List<Order> expected = new ArrayList<>(data);
+        expected.sort(Comparator.comparing(Order::getRegion)
+                .thenComparing(Comparator.comparing(Order::getAmount).reversed()));
+        Assert.assertEquals(expected.size(), sheet.getLastRowNum());
+        for (int i = 0; i < expected.size(); i++) {
+            Row row = sheet.getRow(i + 1);
+            Assert.assertEquals("第" + (i + 1) + "行", expected.get(i).getSeq(), (int) row.getCell(1).getNumericCellValue());
+        }
+    }
+
+    @Test
+    public void numbersStoredAsTextSortByValue() throws IOException {
+        List<Order> data = new ArrayList<>();
+        for (String amount : new String[]{"10", "9", "100", "2.5", "-1"}) {
+            data.add(order(data.size(), "华东", new BigDecimal(amount), 0));
+        }
+        Sheet sheet = reopen(convertor.createSortedExcel(data.iterator(), fieldColumnList, new ExportSort().asc("金额"), 1040000, 0));
+        List<String> amounts = new ArrayList<>();
+        for (int i = 1; i <= sheet.getLastRowNum(); i++) {
+            amounts.add(sheet.getRow(i).getCell(2).getStringCellValue());
+        }
+        Assert.assertEquals(Arrays.asList("-1", "2.5", "9", "10", "100"), amounts);
+    }
+
+    @Test
+    public void equalKeysKeepInputOrder() throws IOException {
+        List<Order> data = orders(500);
+        ExportSort sort = new ExportSort().asc("区域");
+        sort.setRunRows(7);
+
+        Sheet sheet = reopen(convertor.createSortedExcel(data.iterator(), fieldColumnList, sort, 1040000, 0));
+        String region = null;
+        int seq = -1;
+        for (int i = 1; i <= sheet.getLastRowNum(); i++) {
+            Row row = sheet.getRow(i);
+            int current = (int) row.getCell(1).getNumericCellValue();
+            if (row.getCell(0).getStringCellValue().equals(region)) {
+                Assert.assertTrue("同一区域内应当保持输入顺序, 行" + i, current > seq);
+            }
+            region = row.getCell(0).getStringCellValue();
+            seq = current;
+        }
+    }
+
+    @Test
+    public void groupsGetSubtotalRows() throws IOException {
+        List<Order> data = orders(2000);
+        ExportSort sort = new ExportSort().asc("区域").asc("序号").groupBy("区域", "金额", "分");
+        sort.setRunRows(300);
+
+        Sheet sheet = reopen(convertor.createSortedExcel(data.iterator(), fieldColumnList, sort, 1040000, 0));
+        List<String> regions = new ArrayList<>(Arrays.asList(REGIONS));
+        regions.sort(Comparator.naturalOrder());
+        int rowIndex = 1;
+        for (String region : regions) {
+            BigDecimal amount = BigDecimal.ZERO;
+            long cents = 0;
+            for (Order order : data) {
+                if (order.getRegion().equals(region)) {
+                    Row row = sheet.getRow(rowIndex++);
+                    Assert.assertEquals(region, row.getCell(0).getStringCellValue());
+                    amount = amount.add(order.getAmount());
+                    cents += order.getCents();
+                }
+            }
+            Row subtotal = sheet.getRow(rowIndex++);
+            Assert.assertEquals(region + " 小计", subtotal.getCell(0).getStringCellValue());
+            Assert.assertNull(subtotal.getCell(1));
+            Assert.assertEquals(amount.doubleValue(), subtotal.getCell(2).getNumericCellValue(), 1e-6);
+            Assert.assertEquals(cents, (long) subtotal.getCell(3).getNumericCellValue());
+        }
+        Assert.assertEquals(rowIndex - 1, sheet.getLastRowNum());
+    }
+
+    @Test
+    public void failureDeletesRunFiles() {
+        ExportSort sort = new ExportSort().asc("区域");
+        sort.setRunRows(1000);
+        int baseline = runFiles();
+
+        // 读到第2500行时数据源出错, 此时已经落盘了两段
+        CountingIterator<Order> source = new CountingIterator<>(orders(5000).iterator(), 2500);
+        try {
+            convertor.createSortedExcel(source, fieldColumnList, sort, 1040000, 0);
+            Assert.fail("数据源出错时应当抛出异常");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("数据源出错", e.getMessage());
+        }
+        Assert.assertTrue("出错前应当已经落盘", source.maxRunFiles > baseline);
+        Assert.assertEquals("出错后应当删除所有段", baseline, runFiles());
+
+        // 超出最大行数同样删除
+        try {
+            convertor.createSortedExcel(orders(5000).iterator(), fieldColumnList, sort, 3000, 0);
+            Assert.fail("超出最大行数时应当抛出异常");
+        } catch (ExcelException e) {
+            Assert.assertTrue(e.getMessage().startsWith("导出数据数量超出最大限制"));
+        }
+        Assert.assertEquals("超出行数后应当删除所有段", baseline, runFiles());
+    }
+
+    @Test
+    public void rejectsInvalidOptions() {
+        assertRejected(new ExportSort(), "排序导出至少需要一个排序列");
+        assertRejected(new ExportSort().asc("不存在"), "没有找到排序导出的列:不存在");
+        assertRejected(new ExportSort().asc("序号").groupBy("区域"), "分组列必须是第一个排序列:区域");
+        assertRejected(new ExportSort().asc("区域").groupBy("区域", "区域"), "小计列必须是数字列:区域");
+    }
+
+    private void assertRejected(ExportSort sort, String message) {
+        try {
+            convertor.createSortedExcel(orders(10).iterator(), fieldColumnList, sort, 1040000, 0);
+            Assert.fail("应当拒绝:" + sort);
+        } catch (ExcelException e) {
+            Assert.assertEquals(message, e.getMessage());
+        }
+    }
+
+    private static List<Order> orders(int size) {
+        List<Order> data = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            // 金额的位数不同, 按文本比较时顺序会错; 重复较多, 检查稳定性
+            long mixed = (i * 2654435761L) & 0xffffffL;
+            data.add(order(i, REGIONS[(int) (mixed % REGIONS.length)],
+                    BigDecimal.valueOf(mixed % 100000, 2), mixed % 1000 * 1000000000L));
+        }
+        return data;
+    }
+
+    private static Order order(int seq, String region, BigDecimal amount, long cents) {
+        Order order = new Order();
+        order.setRegion(region);
+        order.setSeq(seq);
+        order.setAmount(amount);
+        order.setCents(cents);
+        return order;
+    }
+
+    private static Sheet reopen(SXSSFWorkbook workbook) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try {
+            workbook.write(buffer);
+        } finally {
+            workbook.dispose();
+        }
+        return new XSSFWorkbook(new ByteArrayInputStream(buffer.toByteArray())).getSheetAt(0);
+    }
+
+    /**
+     * 临时目录中行存储的文件数
+     */
+    private static int runFiles() {
+        File[] files = new File(System.getProperty("java.io.tmpdir")).listFiles((dir, name) -> name.startsWith("excel-rows-"));
+        return null == files ? 0 : files.length;
+    }
+
+    /**
+     * 记录读取过程中临时文件数的最大值, 可以在指定行出错
+     */
+    private static class CountingIterator<T> implements Iterator<T> {
+        private final Iterator<T> delegate;
+        private final int failAt;
+        private int count;
+        private int maxRunFiles;
+
+        private CountingIterator(Iterator<T> delegate) {
+            this(delegate, -1);
+        }
+
+        private CountingIterator(Iterator<T> delegate, int failAt) {
+            this.delegate = delegate;
+            this.failAt = failAt;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return delegate.hasNext();
+        }
+
+        @Override
+        public T next() {
+            if (++count == failAt) {
+                throw new IllegalStateException("数据源出错");
+            }
+            if (count % 100 == 0) {
+                maxRunFiles = Math.max(maxRunFiles, runFiles());
+            }
+            return delegate.next();
+        }
+    }
+
+    @Excel("排序导出")
+    public static class Order {
+        @Column(value = "区域", index = 0)
+        private String region;
+        @Column(value = "序号", index = 1)
+        private int seq;
+        @Column(value = "金额", index = 2)
+        private BigDecimal amount;
+        @Column(value = "分", index = 3)
+        private long cents;
+
+        public String getRegion() {
+            return region;
+        }
+
+        public void setRegion(String region) {
+            this.region = region;
+        }
+
+        public int getSeq() {
+            return seq;
+        }
+
+        public void setSeq(int seq) {
+            this.seq = seq;
+        }
+
+        public BigDecimal getAmount() {
+            return amount;
+        }
+
+        public void setAmount(BigDecimal amount) {
+            this.amount = amount;
+        }
+
+        public long getCents() {
+            return cents;
+        }
+
+        public void setCents(long cents) {
+            this.cents = cents;
+        }
+    }
+}
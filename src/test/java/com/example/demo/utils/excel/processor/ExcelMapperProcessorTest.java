@@ -0,0 +1,306 @@
+package com.example.demo.utils.excel.processor;
+
+import com.example.demo.utils.excel.ExcelConvertor;
+import com.example.demo.utils.excel.ExcelMapper;
+import com.example.demo.utils.excel.ExcelMappers;
+import com.example.demo.utils.excel.Sniffer;
+import com.example.demo.utils.excel.tips.Column;
+import com.example.demo.utils.excel.tips.Excel;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 生成的映射与反射导出的结果一致
+ * 测试实体在test-compile时由ExcelMapperProcessor生成映射
+ */
+public class ExcelMapperProcessorTest {
+
+    @Test
+    public void mapperIsGenerated() {
+        Assert.assertNotNull("测试编译时应当生成映射", ExcelMappers.find(Sample.class, null));
+    }
+
+    @Test
+    public void generatedExportMatchesReflection() throws IOException {
+        Sample full = new Sample();
+        full.setText("文本");
+        full.setIntValue(42);
+        full.setIntObject(-7);
+        full.setShortValue((short) 3);
+        full.setShortObject((short) -3);
+        full.setLongValue(12345678901234L);
+        full.setLongObject(-9L);
+        full.setDoubleValue(1.25);
+        full.setDoubleObject(-0.5);
+        full.setBooleanValue(true);
+        full.setBooleanObject(false);
+        full.setDate(new Date(1577836800000L));
+        full.setFloatValue(1.5f);
+        full.setFloatObject(2.5f);
+        full.setByteValue((byte) 8);
+        full.setByteObject((byte) -8);
+        full.setCharValue('A');
+        full.setCharObject('Z');
+        full.setDecimal(new BigDecimal("10.010"));
+        // 包装类型都为null
+        Sample empty = new Sample();
+        List<Sample> data = Arrays.asList(full, empty);
+
+        ExcelMapper<Sample> mapper = ExcelMappers.find(Sample.class, null);
+        ExcelConvertor convertor = new ExcelConvertor();
+        Sheet generated = reopen(convertor.createExcel(data, mapper));
+        Sheet reflected = reopen(convertor.createExcel(data, new Sniffer().findFieldColumns(Sample.class, null)));
+
+        Assert.assertEquals(reflected.getLastRowNum(), generated.getLastRowNum());
+        for (int r = 0; r <= reflected.getLastRowNum(); r++) {
+            Row expected = reflected.getRow(r);
+            Row actual = generated.getRow(r);
+            Assert.assertEquals("行" + r + "的列数", expected.getLastCellNum(), actual.getLastCellNum());
+            for (int c = 0; c < expected.getLastCellNum(); c++) {
+                String where = "行" + r + "列" + reflected.getRow(0).getCell(c).getStringCellValue();
+                Assert.assertEquals(where, describe(expected.getCell(c)), describe(actual.getCell(c)));
+            }
+        }
+        // 抽查: 文本化的类型不会被写成数字
+        Row row = generated.getRow(1);
+        Assert.assertEquals("A", describe(row.getCell(16)).substring(2));
+        Assert.assertEquals("12345678901234", describe(row.getCell(5)).substring(2));
+    }
+
+    private static Sheet reopen(SXSSFWorkbook workbook) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try {
+            workbook.write(buffer);
+        } finally {
+            workbook.dispose();
+        }
+        return new XSSFWorkbook(new ByteArrayInputStream(buffer.toByteArray())).getSheetAt(0);
+    }
+
+    /**
+     * 单元格的类型, 值和格式, 用于比较
+     */
+    private static String describe(Cell cell) {
+        if (null == cell) {
+            return "null";
+        }
+        String format = cell.getCellStyle().getDataFormatString();
+        switch (cell.getCellType()) {
+            case Cell.CELL_TYPE_NUMERIC:
+                return "n:" + cell.getNumericCellValue() + ":" + format;
+            case Cell.CELL_TYPE_BOOLEAN:
+                return "b:" + cell.getBooleanCellValue() + ":" + format;
+            case Cell.CELL_TYPE_STRING:
+                return "s:" + cell.getStringCellValue();
+            default:
+                return cell.getCellType() + ":" + format;
+        }
+    }
+
+    @Excel("生成映射")
+    public static class Sample {
+        @Column(value = "文本", index = 0)
+        private String text;
+        @Column(value = "int", index = 1)
+        private int intValue;
+        @Column(value = "Integer", index = 2)
+        private Integer intObject;
+        @Column(value = "short", index = 3)
+        private short shortValue;
+        @Column(value = "Short", index = 4)
+        private Short shortObject;
+        @Column(value = "long", index = 5)
+        private long longValue;
+        @Column(value = "Long", index = 6)
+        private Long longObject;
+        @Column(value = "double", index = 7)
+        private double doubleValue;
+        @Column(value = "Double", index = 8)
+        private Double doubleObject;
+        @Column(value = "boolean", index = 9)
+        private boolean booleanValue;
+        @Column(value = "Boolean", index = 10)
+        private Boolean booleanObject;
+        @Column(value = "日期", index = 11)
+        private Date date;
+        @Column(value = "float", index = 12)
+        private float floatValue;
+        @Column(value = "Float", index = 13)
+        private Float floatObject;
+        @Column(value = "byte", index = 14)
+        private byte byteValue;
+        @Column(value = "Byte", index = 15)
+        private Byte byteObject;
+        @Column(value = "char", index = 16)
+        private char charValue;
+        @Column(value = "Character", index = 17)
+        private Character charObject;
+        @Column(value = "BigDecimal", index = 18)
+        private BigDecimal decimal;
+
+        public String getText() {
+            return text;
+        }
+
+        public void setText(String text) {
+            this.text = text;
+        }
+
+        public int getIntValue() {
+            return intValue;
+        }
+
+        public void setIntValue(int intValue) {
+            this.intValue = intValue;
+        }
+
+        public Integer getIntObject() {
+            return intObject;
+        }
+
+        public void setIntObject(Integer intObject) {
+            this.intObject = intObject;
+        }
+
+        public short getShortValue() {
+            return shortValue;
+        }
+
+        public void setShortValue(short shortValue) {
+            this.shortValue = shortValue;
+        }
+
+        public Short getShortObject() {
+            return shortObject;
+        }
+
+        public void setShortObject(Short shortObject) {
+            this.shortObject = shortObject;
+        }
+
+        public long getLongValue() {
+            return longValue;
+        }
+
+        public void setLongValue(long longValue) {
+            this.longValue = longValue;
+        }
+
+        public Long getLongObject() {
+            return longObject;
+        }
+
+        public void setLongObject(Long longObject) {
+            this.longObject = longObject;
+        }
+
+        public double getDoubleValue() {
+            return doubleValue;
+        }
+
+        public void setDoubleValue(double doubleValue) {
+            this.doubleValue = doubleValue;
+        }
+
+        public Double getDoubleObject() {
+            return doubleObject;
+        }
+
+        public void setDoubleObject(Double doubleObject) {
+            this.doubleObject = doubleObject;
+        }
+
+        public boolean isBooleanValue() {
+            return booleanValue;
+        }
+
+        public void setBooleanValue(boolean booleanValue) {
+            this.booleanValue = booleanValue;
+        }
+
+        public Boolean getBooleanObject() {
+            return booleanObject;
+        }
+
+        public void setBooleanObject(Boolean booleanObject) {
+            this.booleanObject = booleanObject;
+        }
+
+        public Date getDate() {
+            return date;
+        }
+
+        public void setDate(Date date) {
+            this.date = date;
+        }
+
+        public float getFloatValue() {
+            return floatValue;
+        }
+
+        public void setFloatValue(float floatValue) {
+            this.floatValue = floatValue;
+        }
+
+        public Float getFloatObject() {
+            return floatObject;
+        }
+
+        public void setFloatObject(Float floatObject) {
+            this.floatObject = floatObject;
+        }
+
+        public byte getByteValue() {
+            return byteValue;
+        }
+
+        public void setByteValue(byte byteValue) {
+            this.byteValue = byteValue;
+        }
+
+        public Byte getByteObject() {
+            return byteObject;
+        }
+
+        public void setByteObject(Byte byteObject) {
+            this.byteObject = byteObject;
+        }
+
+        public char getCharValue() {
+            return charValue;
+        }
+
+        public void setCharValue(char charValue) {
+            this.charValue = charValue;
+        }
+
+        public Character getCharObject() {
+            return charObject;
+        }
+
+        public void setCharObject(Character charObject) {
+            this.charObject = charObject;
+        }
+
+        public BigDecimal getDecimal() {
+            return decimal;
+        }
+
+        public void setDecimal(BigDecimal decimal) {
+            this.decimal = decimal;
+        }
+    }
+}
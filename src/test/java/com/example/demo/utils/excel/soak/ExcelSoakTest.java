@@ -0,0 +1,170 @@
+package com.example.demo.utils.excel.soak;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 导出再导入的端到端压测
+ * 每个用例在独立的子进程中运行, 固定堆大小和临时目录, 检查耗时, 峰值常驻内存, 临时文件的峰值和残留
+ * 耗时较长, 默认不运行, 用 mvn test -Psoak 执行
+ * 上限按实测值留出余量, 耗时约2.5倍, 临时目录约1.5倍, 实测值写在各用例上; 换了机器或实现后重新测量再调整
+ */
+public class ExcelSoakTest {
+
+    // 子进程的堆大小
+    private static final String HEAP = "-Xmx256m";
+    // 峰值常驻内存上限, 堆之外还有元空间, 线程栈和内存映射; 实测最高为TEXT 1M行的约350MB
+    private static final long MAX_RSS_KB = 512 * 1024;
+    private static final Pattern PEAK_RSS = Pattern.compile("peakRssKb=(-?\\d+)");
+
+    private Path workDirectory;
+    private Path tempDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        workDirectory = Files.createTempDirectory("excel-soak-");
+        tempDirectory = Files.createDirectory(workDirectory.resolve("tmp"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(workDirectory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void narrow100k() throws Exception {
+        // 实测 7s, 临时目录19MB
+        soak(SoakFixtures.Shape.NARROW, 100000, 1, 20, 32);
+    }
+
+    @Test
+    public void wide100k() throws Exception {
+        // 实测 12s, 74MB
+        soak(SoakFixtures.Shape.WIDE, 100000, 1, 30, 112);
+    }
+
+    @Test
+    public void text100k() throws Exception {
+        // 实测 10s, 66MB
+        soak(SoakFixtures.Shape.TEXT, 100000, 1, 25, 100);
+    }
+
+    @Test
+    public void narrow1M() throws Exception {
+        // 实测 28s, 203MB
+        soak(SoakFixtures.Shape.NARROW, 1000000, 1, 70, 304);
+    }
+
+    @Test
+    public void wide1M() throws Exception {
+        // 实测 74s, 759MB
+        soak(SoakFixtures.Shape.WIDE, 1000000, 1, 185, 1140);
+    }
+
+    @Test
+    public void text1M() throws Exception {
+        // 实测 60s, 675MB
+        soak(SoakFixtures.Shape.TEXT, 1000000, 1, 150, 1012);
+    }
+
+    /**
+     * 一张sheet最多1048576行, 3M行按同一进程中连续三轮1M行执行, 检查多轮之后资源不累积
+     */
+    @Test
+    public void narrow3M() throws Exception {
+        // 实测 78s, 203MB, 与一轮相同
+        soak(SoakFixtures.Shape.NARROW, 1000000, 3, 195, 304);
+    }
+
+    /**
+     * 启动子进程执行一次压测并检查结果
+     * @param shape      数据形状
+     * @param rows       每轮的行数
+     * @param repeats    轮数
+     * @param maxSeconds 总耗时上限
+     * @param maxTempMb  临时目录峰值上限
+     */
+    private void soak(SoakFixtures.Shape shape, int rows, int repeats, long maxSeconds, long maxTempMb) throws Exception {
+        Path outputDirectory = Files.createDirectory(workDirectory.resolve("out"));
+        Path log = workDirectory.resolve("soak.log");
+        List<String> command = new ArrayList<>(Arrays.asList(
+                new File(System.getProperty("java.home"), "bin/java").getPath(),
+                HEAP,
+                "-Djava.io.tmpdir=" + tempDirectory,
+                "-cp", System.getProperty("java.class.path"),
+                SoakRunner.class.getName(),
+                shape.name(), String.valueOf(rows), String.valueOf(repeats), outputDirectory.toString()));
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(maxSeconds);
+        long peakTempBytes = 0;
+        while (!process.waitFor(100, TimeUnit.MILLISECONDS)) {
+            peakTempBytes = Math.max(peakTempBytes, size(tempDirectory));
+            if (System.nanoTime() > deadline) {
+                process.destroyForcibly().waitFor();
+                Assert.fail(shape + " " + rows + "x" + repeats + " 超时 " + maxSeconds + "s\n" + tail(log));
+            }
+        }
+        long seconds = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start);
+        String output = new String(Files.readAllBytes(log), StandardCharsets.UTF_8);
+        System.out.println(output.trim() + " wallS=" + seconds + " peakTempMb=" + (peakTempBytes >> 20));
+
+        Assert.assertEquals("子进程失败\n" + tail(log), 0, process.exitValue());
+        Assert.assertTrue("临时文件峰值" + (peakTempBytes >> 20) + "MB 超过 " + maxTempMb + "MB",
+                peakTempBytes <= maxTempMb << 20);
+        try (Stream<Path> left = Files.list(tempDirectory)) {
+            Object[] files = left.toArray();
+            Assert.assertEquals("残留临时文件:" + Arrays.toString(files), 0, files.length);
+        }
+
+        Matcher matcher = PEAK_RSS.matcher(output);
+        Assert.assertTrue("没有输出统计\n" + tail(log), matcher.find());
+        long peakRssKb = Long.parseLong(matcher.group(1));
+        Assume.assumeTrue("取不到峰值常驻内存", peakRssKb > 0);
+        Assert.assertTrue("峰值常驻内存" + (peakRssKb >> 10) + "MB 超过 " + (MAX_RSS_KB >> 10) + "MB",
+                peakRssKb <= MAX_RSS_KB);
+    }
+
+    private static long size(Path directory) {
+        long size = 0;
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Object path : paths.toArray()) {
+                File file = ((Path) path).toFile();
+                if (file.isFile()) {
+                    size += file.length();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // 遍历时文件被删除, 这次不计
+        }
+        return size;
+    }
+
+    private static String tail(Path log) throws IOException {
+        List<String> lines = Files.readAllLines(log, StandardCharsets.UTF_8);
+        return String.join("\n", lines.subList(Math.max(0, lines.size() - 30), lines.size()));
+    }
+}
@@ -0,0 +1,429 @@
+package com.example.demo.utils.excel.soak;
+
+import com.example.demo.utils.excel.tips.Column;
+import com.example.demo.utils.excel.tips.Excel;
+
+import java.util.AbstractList;
+import java.util.Date;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.IntFunction;
+
+/**
+ * 压测用的确定性数据
+ * 第i行的内容只由i决定, 不保存在内存中, 导出大量数据时不占堆
+ */
+public final class SoakFixtures {
+
+    // 2020-01-01 00:00:00 UTC, 日期精确到秒, 往返Excel不丢精度
+    private static final long BASE_TIME = 1577836800000L;
+
+    private SoakFixtures() {
+    }
+
+    /**
+     * 数据形状
+     */
+    public enum Shape {
+        /** 4列, 各种类型 */
+        NARROW(NarrowRow.class, SoakFixtures::narrow),
+        /** 16列, 字符串和数字各半 */
+        WIDE(WideRow.class, SoakFixtures::wide),
+        /** 6列长字符串, 几乎不重复 */
+        TEXT(TextRow.class, SoakFixtures::text);
+
+        private final Class<?> modelClass;
+        private final IntFunction<Object> generator;
+
+        Shape(Class<?> modelClass, IntFunction<Object> generator) {
+            this.modelClass = modelClass;
+            this.generator = generator;
+        }
+
+        @SuppressWarnings("unchecked")
+        public <T> Class<T> modelClass() {
+            return (Class<T>) modelClass;
+        }
+
+        /**
+         * 第index行
+         */
+        public Object row(int index) {
+            return generator.apply(index);
+        }
+
+        /**
+         * 按需生成的只读数据列表
+         */
+        public <T> List<T> rows(int size) {
+            return new GeneratedList<>(this, size);
+        }
+    }
+
+    private static class GeneratedList<T> extends AbstractList<T> implements RandomAccess {
+        private final Shape shape;
+        private final int size;
+
+        private GeneratedList(Shape shape, int size) {
+            this.shape = shape;
+            this.size = size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(int index) {
+            return (T) shape.row(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * 打散行号, 作为各列取值的来源
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+        value = (value ^ (value >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return value ^ (value >>> 33);
+    }
+
+    private static NarrowRow narrow(int index) {
+        long mixed = mix(index);
+        NarrowRow row = new NarrowRow();
+        row.setCode("N" + index);
+        row.setAmount(Math.floorMod(mixed, 10000000L) / 100.0);
+        row.setQuantity((int) Math.floorMod(mixed >>> 20, 100000L));
+        row.setCreated(new Date(BASE_TIME + Math.floorMod(mixed, 315360000L) * 1000));
+        return row;
+    }
+
+    private static WideRow wide(int index) {
+        WideRow row = new WideRow();
+        String[] texts = new String[8];
+        double[] numbers = new double[8];
+        for (int i = 0; i < 8; i++) {
+            long mixed = mix(index * 16L + i);
+            texts[i] = "w" + i + "-" + Long.toString(Math.floorMod(mixed, 1000000L), 36);
+            numbers[i] = Math.floorMod(mixed >>> 16, 100000000L) / 100.0;
+        }
+        row.setS1(texts[0]);
+        row.setS2(texts[1]);
+        row.setS3(texts[2]);
+        row.setS4(texts[3]);
+        row.setS5(texts[4]);
+        row.setS6(texts[5]);
+        row.setS7(texts[6]);
+        row.setS8(texts[7]);
+        row.setD1(numbers[0]);
+        row.setD2(numbers[1]);
+        row.setD3(numbers[2]);
+        row.setD4(numbers[3]);
+        row.setD5(numbers[4]);
+        row.setD6(numbers[5]);
+        row.setD7(numbers[6]);
+        row.setD8(numbers[7]);
+        return row;
+    }
+
+    private static TextRow text(int index) {
+        TextRow row = new TextRow();
+        row.setTitle("标题-" + index + "-" + Long.toHexString(mix(index)));
+        row.setAuthor("作者" + Long.toString(Math.floorMod(mix(index + 1L), 1000000000L), 36) + " Author");
+        row.setCategory("分类/" + Math.floorMod(mix(index + 2L), 5000L) + "/子分类/" + Math.floorMod(mix(index + 3L), 97L));
+        row.setSummary("摘要: 第" + index + "行的说明文字, 带一些重复的内容 " + Long.toHexString(mix(index + 4L)));
+        row.setAddress("某省某市某区某路" + Math.floorMod(mix(index + 5L), 100000L) + "号");
+        row.setRemark("remark-" + Long.toString(mix(index + 6L), 36) + "-" + Long.toString(mix(index + 7L), 36));
+        return row;
+    }
+
+    @Excel("窄表")
+    public static class NarrowRow {
+        @Column(value = "编码", index = 0)
+        private String code;
+        @Column(value = "金额", index = 1)
+        private double amount;
+        @Column(value = "数量", index = 2)
+        private int quantity;
+        @Column(value = "创建时间", index = 3)
+        private Date created;
+
+        public String getCode() {
+            return code;
+        }
+
+        public void setCode(String code) {
+            this.code = code;
+        }
+
+        public double getAmount() {
+            return amount;
+        }
+
+        public void setAmount(double amount) {
+            this.amount = amount;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(int quantity) {
+            this.quantity = quantity;
+        }
+
+        public Date getCreated() {
+            return created;
+        }
+
+        public void setCreated(Date created) {
+            this.created = created;
+        }
+
+        @Override
+        public String toString() {
+            return code + "|" + amount + "|" + quantity + "|" + (null == created ? null : created.getTime());
+        }
+    }
+
+    @Excel("宽表")
+    public static class WideRow {
+        @Column(value = "s1", index = 0)
+        private String s1;
+        @Column(value = "s2", index = 1)
+        private String s2;
+        @Column(value = "s3", index = 2)
+        private String s3;
+        @Column(value = "s4", index = 3)
+        private String s4;
+        @Column(value = "s5", index = 4)
+        private String s5;
+        @Column(value = "s6", index = 5)
+        private String s6;
+        @Column(value = "s7", index = 6)
+        private String s7;
+        @Column(value = "s8", index = 7)
+        private String s8;
+        @Column(value = "d1", index = 8)
+        private double d1;
+        @Column(value = "d2", index = 9)
+        private double d2;
+        @Column(value = "d3", index = 10)
+        private double d3;
+        @Column(value = "d4", index = 11)
+        private double d4;
+        @Column(value = "d5", index = 12)
+        private double d5;
+        @Column(value = "d6", index = 13)
+        private double d6;
+        @Column(value = "d7", index = 14)
+        private double d7;
+        @Column(value = "d8", index = 15)
+        private double d8;
+
+        public String getS1() {
+            return s1;
+        }
+
+        public void setS1(String s1) {
+            this.s1 = s1;
+        }
+
+        public String getS2() {
+            return s2;
+        }
+
+        public void setS2(String s2) {
+            this.s2 = s2;
+        }
+
+        public String getS3() {
+            return s3;
+        }
+
+        public void setS3(String s3) {
+            this.s3 = s3;
+        }
+
+        public String getS4() {
+            return s4;
+        }
+
+        public void setS4(String s4) {
+            this.s4 = s4;
+        }
+
+        public String getS5() {
+            return s5;
+        }
+
+        public void setS5(String s5) {
+            this.s5 = s5;
+        }
+
+        public String getS6() {
+            return s6;
+        }
+
+        public void setS6(String s6) {
+            this.s6 = s6;
+        }
+
+        public String getS7() {
+            return s7;
+        }
+
+        public void setS7(String s7) {
+            this.s7 = s7;
+        }
+
+        public String getS8() {
+            return s8;
+        }
+
+        public void setS8(String s8) {
+            this.s8 = s8;
+        }
+
+        public double getD1() {
+            return d1;
+        }
+
+        public void setD1(double d1) {
+            this.d1 = d1;
+        }
+
+        public double getD2() {
+            return d2;
+        }
+
+        public void setD2(double d2) {
+            this.d2 = d2;
+        }
+
+        public double getD3() {
+            return d3;
+        }
+
+        public void setD3(double d3) {
+            this.d3 = d3;
+        }
+
+        public double getD4() {
+            return d4;
+        }
+
+        public void setD4(double d4) {
+            this.d4 = d4;
+        }
+
+        public double getD5() {
+            return d5;
+        }
+
+        public void setD5(double d5) {
+            this.d5 = d5;
+        }
+
+        public double getD6() {
+            return d6;
+        }
+
+        public void setD6(double d6) {
+            this.d6 = d6;
+        }
+
+        public double getD7() {
+            return d7;
+        }
+
+        public void setD7(double d7) {
+            this.d7 = d7;
+        }
+
+        public double getD8() {
+            return d8;
+        }
+
+        public void setD8(double d8) {
+            this.d8 = d8;
+        }
+
+        @Override
+        public String toString() {
+            return s1 + "|" + s2 + "|" + s3 + "|" + s4 + "|" + s5 + "|" + s6 + "|" + s7 + "|" + s8 + "|"
+                    + d1 + "|" + d2 + "|" + d3 + "|" + d4 + "|" + d5 + "|" + d6 + "|" + d7 + "|" + d8;
+        }
+    }
+
+    @Excel("长文本")
+    public static class TextRow {
+        @Column(value = "标题", index = 0)
+        private String title;
+        @Column(value = "作者", index = 1)
+        private String author;
+        @Column(value = "分类", index = 2)
+        private String category;
+        @Column(value = "摘要", index = 3)
+        private String summary;
+        @Column(value = "地址", index = 4)
+        private String address;
+        @Column(value = "备注", index = 5)
+        private String remark;
+
+        public String getTitle() {
+            return title;
+        }
+
+        public void setTitle(String title) {
+            this.title = title;
+        }
+
+        public String getAuthor() {
+            return author;
+        }
+
+        public void setAuthor(String author) {
+            this.author = author;
+        }
+
+        public String getCategory() {
+            return category;
+        }
+
+        public void setCategory(String category) {
+            this.category = category;
+        }
+
+        public String getSummary() {
+            return summary;
+        }
+
+        public void setSummary(String summary) {
+            this.summary = summary;
+        }
+
+        public String getAddress() {
+            return address;
+        }
+
+        public void setAddress(String address) {
+            this.address = address;
+        }
+
+        public String getRemark() {
+            return remark;
+        }
+
+        public void setRemark(String remark) {
+            this.remark = remark;
+        }
+
+        @Override
+        public String toString() {
+            return title + "|" + author + "|" + category + "|" + summary + "|" + address + "|" + remark;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.demo.utils.excel.soak;
+
+import com.example.demo.utils.excel.ExcelReader;
+import com.example.demo.utils.excel.ExcelWriter;
+import com.example.demo.utils.excel.StoredRows;
+import com.example.demo.utils.excel.goods.ImportBudget;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * 压测子进程的入口
+ * 导出指定形状和行数的数据, 再导入回来逐行比对, 最后打印耗时和峰值常驻内存
+ * 由{@link ExcelSoakTest}以固定的堆大小和独立的临时目录启动
+ * <p>
+ * 参数: 形状 行数 轮数 输出目录
+ */
+public class SoakRunner {
+
+    // 达到这个行数时导入到落盘的行存储, 否则导入到List
+    private static final int STORE_THRESHOLD = 500000;
+
+    public static void main(String[] args) throws Exception {
+        SoakFixtures.Shape shape = SoakFixtures.Shape.valueOf(args[0]);
+        int rows = Integer.parseInt(args[1]);
+        int repeats = Integer.parseInt(args[2]);
+        File outputDirectory = new File(args[3]);
+
+        ImportBudget budget = new ImportBudget();
+        budget.setMaxUncompressedBytes(4L * 1024 * 1024 * 1024);
+        budget.setMemoryBudgetBytes(Runtime.getRuntime().maxMemory() / 4 * 3);
+        ExcelReader.instance().setImportBudget(budget);
+
+        long exportMillis = 0;
+        long importMillis = 0;
+        long fileBytes = 0;
+        for (int round = 0; round < repeats; round++) {
+            File file = new File(outputDirectory, shape.name().toLowerCase() + "-" + round + ".xlsx");
+            try {
+                long start = System.currentTimeMillis();
+                export(shape, rows, file);
+                exportMillis += System.currentTimeMillis() - start;
+                fileBytes = file.length();
+
+                start = System.currentTimeMillis();
+                importAndVerify(shape, rows, file);
+                importMillis += System.currentTimeMillis() - start;
+            } finally {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+
+        System.out.println("SOAK shape=" + shape + " rows=" + rows + " repeats=" + repeats
+                + " exportMs=" + exportMillis + " importMs=" + importMillis + " fileBytes=" + fileBytes
+                + " peakRssKb=" + peakRssKb());
+    }
+
+    private static <T> void export(SoakFixtures.Shape shape, int rows, File file) throws IOException {
+        List<T> data = shape.rows(rows);
+        Class<T> modelClass = shape.modelClass();
+        ExcelWriter.instance().exportToExcel(new FileResponse(file), data, modelClass, null);
+        if (!file.isFile() || file.length() == 0) {
+            throw new IllegalStateException("导出文件为空:" + file);
+        }
+    }
+
+    private static <T> void importAndVerify(SoakFixtures.Shape shape, int rows, File file) {
+        Class<T> modelClass = shape.modelClass();
+        FileMultipartFile upload = new FileMultipartFile(file);
+        if (rows >= STORE_THRESHOLD) {
+            try (StoredRows<T> imported = ExcelReader.instance().importToStore(upload, modelClass, null)) {
+                verify(shape, rows, imported);
+            }
+        } else {
+            verify(shape, rows, ExcelReader.instance().importToList(upload, modelClass, null));
+        }
+    }
+
+    private static void verify(SoakFixtures.Shape shape, int rows, List<?> imported) {
+        if (imported.size() != rows) {
+            throw new IllegalStateException("导入行数不一致, 期望:" + rows + ", 实际:" + imported.size());
+        }
+        for (int i = 0; i < rows; i++) {
+            String expected = String.valueOf(shape.row(i));
+            String actual = String.valueOf(imported.get(i));
+            if (!expected.equals(actual)) {
+                throw new IllegalStateException("第" + i + "行不一致, 期望:" + expected + ", 实际:" + actual);
+            }
+        }
+    }
+
+    /**
+     * 进程的峰值常驻内存, 读/proc/self/status的VmHWM, 取不到时为-1
+     */
+    private static long peakRssKb() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"), StandardCharsets.UTF_8)) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.substring(6).replace("kB", "").trim());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // 非Linux系统
+        }
+        return -1;
+    }
+}